@@ -0,0 +1,92 @@
+package com.redmoon2333.benchmark;
+
+import com.redmoon2333.util.JwtPrincipal;
+import com.redmoon2333.util.JwtUtil;
+import com.redmoon2333.util.RoleAuthorities;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JWT 验签解析基准（user-036）
+ *
+ * - verifyOnce：当前过滤器的做法，验签解析一次得到 JwtPrincipal，之后的字段读取都来自该对象
+ * - parsePerAccessor：原过滤器的做法，用户名、校验、过期、身份历史、当前身份各解析一次令牌（共5次）
+ *
+ * 两者都只覆盖本地验签部分，不含 Redis 查询
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtVerifyBenchmark {
+
+    private static final String SECRET = "YourJWTSecretKeyMustBeAtLeast256BitsLongForHS256Algorithm";
+
+    private JwtUtil jwtUtil;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 604800000L);
+        jwtUtil.init();
+
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("userId", 42);
+        claims.put("username", "zhangsan");
+        claims.put("roleHistory", "2024级部长&2023级部员");
+        claims.put("currentRole", "2024级部长");
+        claims.put(JwtPrincipal.GENERATION_CLAIM, 0L);
+        claims.put(RoleAuthorities.ROLE_MASK_CLAIM, RoleAuthorities.MINISTER | RoleAuthorities.MEMBER);
+        claims.put(RoleAuthorities.COHORT_YEARS_CLAIM, List.of(2023, 2024));
+        Date now = new Date();
+        token = Jwts.builder()
+                .setClaims(claims)
+                .setSubject("zhangsan")
+                .setIssuedAt(now)
+                .setExpiration(new Date(now.getTime() + 604800000L))
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes()), SignatureAlgorithm.HS256)
+                .compact();
+    }
+
+    @Benchmark
+    public void verifyOnce(Blackhole blackhole) {
+        JwtPrincipal principal = jwtUtil.parseToken(token);
+        blackhole.consume(principal.username());
+        blackhole.consume(principal.expiresAt());
+        blackhole.consume(principal.roleHistory());
+        blackhole.consume(principal.currentRole());
+        blackhole.consume(principal.userId());
+    }
+
+    @Benchmark
+    public void parsePerAccessor(Blackhole blackhole) {
+        blackhole.consume(jwtUtil.getUsernameFromToken(token));
+        blackhole.consume(jwtUtil.getUserIdFromToken(token));
+        blackhole.consume(jwtUtil.getExpirationDateFromToken(token));
+        blackhole.consume(jwtUtil.getRoleHistoryFromToken(token));
+        blackhole.consume(jwtUtil.getCurrentRoleFromToken(token));
+    }
+}
@@ -0,0 +1,94 @@
+package com.redmoon2333.benchmark;
+
+import com.redmoon2333.config.PublicRoutes;
+import jakarta.servlet.http.HttpServletRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JWT过滤器公开路由判断基准（user-045）
+ *
+ * - trie：当前 JwtAuthenticationFilter.shouldNotFilter，即 PublicRoutes.isAnonymous
+ * - legacyChain：原 shouldNotFilter 的 equals/startsWith 链（原样保留在本类中作对照）
+ *
+ * 请求样本按实际流量构成混合：上传图片、公开查询、AI接口、需要认证的业务接口
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PublicRoutesBenchmark {
+
+    private static final String[][] SAMPLES = {
+            {"GET", "/uploads/daily/2024/09/abc123.jpg"},
+            {"GET", "/uploads/activities/cover.png"},
+            {"GET", "/api/activities/12"},
+            {"GET", "/api/past-activities"},
+            {"GET", "/api/daily-images"},
+            {"GET", "/api/users/alumni"},
+            {"POST", "/api/auth/login"},
+            {"POST", "/api/ai/chat/stream"},
+            {"GET", "/api/tasks/my"},
+            {"POST", "/api/activities"},
+            {"PUT", "/api/users/profile"},
+            {"GET", "/api/roles/candidates/2024"}
+    };
+
+    private PublicRoutes publicRoutes;
+    private HttpServletRequest[] requests;
+
+    @Setup
+    public void setUp() {
+        publicRoutes = new PublicRoutes();
+        requests = new HttpServletRequest[SAMPLES.length];
+        for (int i = 0; i < SAMPLES.length; i++) {
+            requests[i] = new MockHttpServletRequest(SAMPLES[i][0], SAMPLES[i][1]);
+        }
+    }
+
+    @Benchmark
+    public void trie(Blackhole blackhole) {
+        for (HttpServletRequest request : requests) {
+            blackhole.consume(publicRoutes.isAnonymous(request));
+        }
+    }
+
+    @Benchmark
+    public void legacyChain(Blackhole blackhole) {
+        for (HttpServletRequest request : requests) {
+            blackhole.consume(legacyShouldNotFilter(request));
+        }
+    }
+
+    private static boolean legacyShouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        String method = request.getMethod();
+        return path.equals("/api/auth/login") ||
+               path.equals("/api/auth/register") ||
+               path.equals("/api/auth/check-username") ||
+               path.startsWith("/api/public/") ||
+               path.equals("/") ||
+               path.startsWith("/static/") ||
+               path.startsWith("/uploads/") ||
+               path.equals("/favicon.ico") ||
+               ("GET".equals(method) && path.startsWith("/api/activities")) ||
+               ("GET".equals(method) && path.startsWith("/api/past-activities")) ||
+               path.equals("/api/users/alumni") ||
+               path.startsWith("/api/users/search/name") ||
+               ("GET".equals(method) && path.equals("/api/daily-images"));
+    }
+}
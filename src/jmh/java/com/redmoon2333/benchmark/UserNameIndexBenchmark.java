@@ -0,0 +1,107 @@
+package com.redmoon2333.benchmark;
+
+import com.redmoon2333.entity.User;
+import com.redmoon2333.mapper.UserMapper;
+import com.redmoon2333.service.UserNameIndexService;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 姓名索引查询基准（user-049）
+ *
+ * 按 userCount 个随机姓名（2~3个 GB2312 一级汉字）构建索引，测量单次查询耗时：
+ * - substring：单字子串（命中较多，需排序截断）
+ * - twoChars：两字子串（倒排求交）
+ * - initials：拼音首字母
+ * - exact：完整姓名精确查找
+ *
+ * 目标是在各规模下单次查询都在亚毫秒级
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserNameIndexBenchmark {
+
+    @Param({"10000", "100000"})
+    private int userCount;
+
+    private UserNameIndexService index;
+    private String existingName;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        Charset gb2312 = Charset.forName("GB2312");
+        List<User> users = new ArrayList<>(userCount);
+        for (int i = 0; i < userCount; i++) {
+            User user = new User();
+            user.setUserId(i + 1);
+            user.setName(randomName(random, gb2312));
+            user.setRoleHistory("2024级部员");
+            users.add(user);
+        }
+        existingName = users.get(userCount / 2).getName();
+
+        UserMapper userMapper = Mockito.mock(UserMapper.class);
+        Mockito.when(userMapper.selectList(Mockito.any())).thenReturn(users);
+
+        index = new UserNameIndexService();
+        ReflectionTestUtils.setField(index, "userMapper", userMapper);
+        ReflectionTestUtils.setField(index, "maxResults", 20);
+        ReflectionTestUtils.setField(index, "maxQueryLength", 20);
+        index.rebuild();
+    }
+
+    @Benchmark
+    public Object substring() {
+        return index.search(existingName.substring(0, 1));
+    }
+
+    @Benchmark
+    public Object twoChars() {
+        return index.search(existingName.substring(0, 2));
+    }
+
+    @Benchmark
+    public Object initials() {
+        return index.search("zs");
+    }
+
+    @Benchmark
+    public Object exact() {
+        return index.findByName(existingName);
+    }
+
+    /**
+     * 2~3个随机 GB2312 一级汉字（区 0xB0~0xD7，位 0xA1~0xFE）
+     */
+    private static String randomName(Random random, Charset gb2312) {
+        int length = 2 + random.nextInt(2);
+        StringBuilder name = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            byte[] code = {(byte) (0xB0 + random.nextInt(0xD7 - 0xB0)), (byte) (0xA1 + random.nextInt(0xFE - 0xA1))};
+            name.append(new String(code, gb2312));
+        }
+        return name.toString();
+    }
+}
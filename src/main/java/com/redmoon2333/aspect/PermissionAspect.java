@@ -13,6 +13,7 @@ import org.springframework.stereotype.Component;
 
 /**
  * 权限验证切面
+ * Why: 切面在每个受保护接口上执行，日志只在 DEBUG 级别输出，避免热点接口的日志I/O
  */
 @Aspect
 @Component
@@ -28,15 +29,13 @@ public class PermissionAspect {
      */
     @Before("@annotation(requireMinisterRole)")
     public void checkMinisterPermission(JoinPoint joinPoint, RequireMinisterRole requireMinisterRole) {
-        String methodName = joinPoint.getSignature().getName();
-        String className = joinPoint.getTarget().getClass().getSimpleName();
+        if (logger.isDebugEnabled()) {
+            logger.debug("权限验证开始 - {}#{}, 要求: {}", joinPoint.getTarget().getClass().getSimpleName(),
+                    joinPoint.getSignature().getName(), requireMinisterRole.value());
+        }
         
-        logger.info("权限验证开始 - {}#{}, 要求: {}", className, methodName, requireMinisterRole.value());
-        
-        // 执行权限检查
+        // 执行权限检查（通过时的日志在 PermissionUtil 中以 DEBUG 级别输出）
         permissionUtil.checkMinisterPermission();
-        
-        logger.info("权限验证通过 - {}#{}", className, methodName);
     }
     
     /**
@@ -44,14 +43,12 @@ public class PermissionAspect {
      */
     @Before("@annotation(requireMemberRole)")
     public void checkMemberPermission(JoinPoint joinPoint, RequireMemberRole requireMemberRole) {
-        String methodName = joinPoint.getSignature().getName();
-        String className = joinPoint.getTarget().getClass().getSimpleName();
+        if (logger.isDebugEnabled()) {
+            logger.debug("权限验证开始 - {}#{}, 要求: {}", joinPoint.getTarget().getClass().getSimpleName(),
+                    joinPoint.getSignature().getName(), requireMemberRole.value());
+        }
         
-        logger.info("权限验证开始 - {}#{}, 要求: {}", className, methodName, requireMemberRole.value());
-        
-        // 执行权限检查
+        // 执行权限检查（通过时的日志在 PermissionUtil 中以 DEBUG 级别输出）
         permissionUtil.checkMemberPermission();
-        
-        logger.info("权限验证通过 - {}#{}", className, methodName);
     }
 }
\ No newline at end of file
@@ -0,0 +1,175 @@
+package com.redmoon2333.config;
+
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.ReactorNettyClientRequestFactory;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionPoolMetrics;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.SocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * AI上游HTTP客户端工厂
+ *
+ * 架构说明：
+ * - 所有 ChatClient 与 EmbeddingModel 共用同一个 Reactor Netty 连接池
+ * - 流式调用（WebClient）与同步调用（RestClient）共用同一个 HttpClient
+ * - 连接池指标通过 MeterRegistrar 回调收集，由 PerformanceController 对外暴露
+ *
+ * Why: 之前每个 ChatClient 各自创建 HttpClient，EmbeddingConfig 又单独维护 ai-pool，
+ *      突发流量下对同一 ChatECNU 主机出现多个连接池、重复 TLS 握手和无上限的等待队列
+ *
+ * Warning: 不注册为 WebClient.Builder / ClientHttpConnector Bean，避免被 Spring Boot 自动配置
+ *          应用到其他 WebClient 上
+ */
+@Component
+public class AiHttpClientFactory {
+    private static final Logger logger = LoggerFactory.getLogger(AiHttpClientFactory.class);
+
+    private static final String POOL_NAME = "ai-pool";
+
+    @Value("${spring.ai.openai.timeout.connect:30s}")
+    private Duration connectTimeout;
+
+    @Value("${spring.ai.openai.timeout.read:300s}")
+    private Duration readTimeout;
+
+    @Value("${spring.ai.openai.pool.max-connections:50}")
+    private int maxConnections;
+
+    @Value("${spring.ai.openai.pool.pending-acquire-max-count:200}")
+    private int pendingAcquireMaxCount;
+
+    @Value("${spring.ai.openai.pool.pending-acquire-timeout:10s}")
+    private Duration pendingAcquireTimeout;
+
+    @Value("${spring.ai.openai.pool.max-idle-time:60s}")
+    private Duration maxIdleTime;
+
+    @Value("${spring.ai.openai.pool.max-life-time:30m}")
+    private Duration maxLifeTime;
+
+    @Value("${spring.ai.openai.pool.evict-interval:30s}")
+    private Duration evictInterval;
+
+    // key: 远端地址，value: Reactor Netty 回调注册的连接池指标
+    private final Map<String, ConnectionPoolMetrics> poolMetrics = new ConcurrentHashMap<>();
+
+    private ConnectionProvider connectionProvider;
+
+    private HttpClient httpClient;
+
+    @PostConstruct
+    public void init() {
+        connectionProvider = ConnectionProvider.builder(POOL_NAME)
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                .maxIdleTime(maxIdleTime)
+                .maxLifeTime(maxLifeTime)
+                .evictInBackground(evictInterval)
+                .metrics(true, () -> new PoolMetricsRegistrar())
+                .build();
+
+        // Why: 只使用 responseTimeout（按请求生效，响应结束后自动移除），
+        //      不再在连接上挂 ReadTimeoutHandler，否则池中空闲连接会被误判超时关闭
+        httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .keepAlive(true)
+                .responseTimeout(readTimeout);
+
+        logger.info("AI连接池初始化完成: maxConnections={}, pendingAcquireMaxCount={}, maxIdleTime={}",
+                maxConnections, pendingAcquireMaxCount, maxIdleTime);
+    }
+
+    /**
+     * 创建共享连接池的 WebClient.Builder（用于流式调用）
+     */
+    public WebClient.Builder webClientBuilder() {
+        return WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient));
+    }
+
+    /**
+     * 创建共享连接池的 RestClient.Builder（用于同步调用）
+     *
+     * Why: Spring AI 的 OpenAiApi 同步 call() 走 RestClient，不显式指定时会使用另一套默认连接池
+     */
+    public RestClient.Builder restClientBuilder() {
+        ReactorNettyClientRequestFactory requestFactory = new ReactorNettyClientRequestFactory(httpClient);
+        requestFactory.setReadTimeout(readTimeout);
+        return RestClient.builder().requestFactory(requestFactory);
+    }
+
+    /**
+     * 获取连接池快照（监控用）
+     */
+    public List<PoolStats> getPoolStats() {
+        List<PoolStats> stats = new ArrayList<>();
+        poolMetrics.forEach((remote, metrics) -> stats.add(new PoolStats(
+                remote,
+                metrics.acquiredSize(),
+                metrics.idleSize(),
+                metrics.allocatedSize(),
+                metrics.pendingAcquireSize(),
+                metrics.maxAllocatedSize(),
+                metrics.maxPendingAcquireSize()
+        )));
+        return stats;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (connectionProvider != null) {
+            connectionProvider.disposeLater().block(Duration.ofSeconds(10));
+            logger.info("AI连接池已释放");
+        }
+    }
+
+    /**
+     * Reactor Netty 连接池指标回调
+     * Why: 项目未引入 micrometer-core，使用自定义 MeterRegistrar 直接持有 ConnectionPoolMetrics
+     */
+    private class PoolMetricsRegistrar implements ConnectionProvider.MeterRegistrar {
+
+        @Override
+        public void registerMetrics(String poolName, String id, SocketAddress remoteAddress, ConnectionPoolMetrics metrics) {
+            poolMetrics.put(String.valueOf(remoteAddress), metrics);
+            logger.debug("注册连接池指标: pool={}, remote={}", poolName, remoteAddress);
+        }
+
+        @Override
+        public void deRegisterMetrics(String poolName, String id, SocketAddress remoteAddress) {
+            poolMetrics.remove(String.valueOf(remoteAddress));
+        }
+    }
+
+    /**
+     * 连接池统计信息
+     * pendingAcquire 接近 maxPendingAcquire 表示连接池已饱和
+     */
+    public record PoolStats(
+        String remoteAddress,
+        int acquired,
+        int idle,
+        int allocated,
+        int pendingAcquire,
+        int maxAllocated,
+        int maxPendingAcquire
+    ) {}
+}
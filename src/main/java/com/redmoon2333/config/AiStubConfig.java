@@ -0,0 +1,63 @@
+package com.redmoon2333.config;
+
+import com.redmoon2333.stub.OpenAiStubServer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 进程内 OpenAI 模拟服务配置（压测用）
+ *
+ * 启用方式：--spring.profiles.active=dev,ai-stub
+ * application-ai-stub.yml 会同时把 spring.ai.openai.base-url 指向本地模拟服务，
+ * SaaLLMConfig 与 EmbeddingConfig 无需任何改动即可压测对话与 RAG 链路
+ *
+ * Warning: 仅在 ai.stub.enabled=true 时生效，生产环境不要启用
+ */
+@Configuration
+@ConditionalOnProperty(name = "ai.stub.enabled", havingValue = "true")
+public class AiStubConfig {
+
+    @Value("${ai.stub.host:127.0.0.1}")
+    private String host;
+
+    @Value("${ai.stub.port:18080}")
+    private int port;
+
+    @Value("${ai.stub.ttft:300ms}")
+    private Duration ttft;
+
+    @Value("${ai.stub.tokens-per-second:40}")
+    private double tokensPerSecond;
+
+    @Value("${ai.stub.completion-tokens:200}")
+    private int completionTokens;
+
+    @Value("${ai.stub.error-rate:0.0}")
+    private double errorRate;
+
+    @Value("${ai.stub.error-status:503}")
+    private int errorStatus;
+
+    @Value("${rag.embedding-dimensions:1024}")
+    private int embeddingDimensions;
+
+    @Value("${ai.stub.embedding-latency:20ms}")
+    private Duration embeddingLatency;
+
+    @Value("${ai.stub.tool-calls:true}")
+    private boolean toolCalls;
+
+    @Value("${ai.stub.seed:42}")
+    private long seed;
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public OpenAiStubServer openAiStubServer() {
+        return new OpenAiStubServer(new OpenAiStubServer.Options(
+                host, port, ttft, tokensPerSecond, completionTokens,
+                errorRate, errorStatus, embeddingDimensions, embeddingLatency, toolCalls, seed));
+    }
+}
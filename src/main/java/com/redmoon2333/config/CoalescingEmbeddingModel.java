@@ -0,0 +1,64 @@
+package com.redmoon2333.config;
+
+import cn.hutool.crypto.SecureUtil;
+import com.redmoon2333.util.SingleFlight;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.document.MetadataMode;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+/**
+ * 合并相同进行中请求的 EmbeddingModel 装饰器
+ *
+ * Why: 同一问题被并发提问时，VectorStore 检索会为每个请求各做一次查询向量化，
+ *      相同输入在进行中时只向上游发送一次
+ */
+public class CoalescingEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+    private final String modelName;
+    private final SingleFlight singleFlight = new SingleFlight("embedding");
+
+    public CoalescingEmbeddingModel(EmbeddingModel delegate, String modelName) {
+        this.delegate = delegate;
+        this.modelName = modelName;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        return singleFlight.execute(buildKey(request), () -> delegate.call(request));
+    }
+
+    /**
+     * 单文档向量化（RAG 入库走此路径）
+     * Why: 合并结果是同一个数组，返回副本，避免调用方之间互相修改
+     */
+    @Override
+    public float[] embed(Document document) {
+        return singleFlight.execute(buildKey(document), () -> delegate.embed(document)).clone();
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    public SingleFlight.Stats getStats() {
+        return singleFlight.getStats();
+    }
+
+    /**
+     * 文档key按包含全部元数据的格式化内容计算，无论委托模型采用哪种 MetadataMode，key 相同时输入必然相同
+     */
+    private String buildKey(Document document) {
+        return SecureUtil.sha256(modelName + "\u0000document\u0000" + document.getFormattedContent(MetadataMode.ALL));
+    }
+
+    private String buildKey(EmbeddingRequest request) {
+        String model = request.getOptions() != null && request.getOptions().getModel() != null
+                ? request.getOptions().getModel() : modelName;
+        // Why: 以 \u0000 分隔输入，避免 ["ab","c"] 与 ["a","bc"] 得到相同key
+        return SecureUtil.sha256(model + "\u0000" + String.join("\u0000", request.getInstructions()));
+    }
+}
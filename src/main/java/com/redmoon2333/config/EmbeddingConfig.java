@@ -1,23 +1,14 @@
 package com.redmoon2333.config;
 
-import io.netty.channel.ChannelOption;
-import io.netty.handler.timeout.ReadTimeoutHandler;
-import io.netty.handler.timeout.WriteTimeoutHandler;
 import org.springframework.ai.document.MetadataMode;
-import reactor.netty.resources.ConnectionProvider;
 import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.openai.OpenAiEmbeddingModel;
 import org.springframework.ai.openai.OpenAiEmbeddingOptions;
 import org.springframework.ai.openai.api.OpenAiApi;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.client.reactive.ReactorClientHttpConnector;
-import org.springframework.web.reactive.function.client.WebClient;
-import reactor.netty.http.client.HttpClient;
-
-import java.time.Duration;
-import java.util.concurrent.TimeUnit;
 
 @Configuration
 public class EmbeddingConfig {
@@ -31,11 +22,9 @@ public class EmbeddingConfig {
     @Value("${rag.embedding-model:ecnu-embedding-small}")
     private String embeddingModelName;
 
-    @Value("${spring.ai.openai.timeout.connect:30s}")
-    private Duration connectTimeout;
-
-    @Value("${spring.ai.openai.timeout.read:300s}")
-    private Duration readTimeout;
+    // Why: 与 SaaLLMConfig 的 ChatClient 共用同一个连接池，避免对同一主机维护两套连接
+    @Autowired
+    private AiHttpClientFactory aiHttpClientFactory;
 
     @Bean
     public OpenAiApi openAiApi() {
@@ -44,37 +33,21 @@ public class EmbeddingConfig {
                 .apiKey(apiKey)
                 .embeddingsPath("/v1/embeddings")
                 .completionsPath("/v1/chat/completions")
-                .webClientBuilder(createWebClientBuilder())
+                .webClientBuilder(aiHttpClientFactory.webClientBuilder())
+                .restClientBuilder(aiHttpClientFactory.restClientBuilder())
                 .build();
     }
 
+    /**
+     * Why: 外层包装 CoalescingEmbeddingModel，并发的相同查询向量化只请求一次上游
+     */
     @Bean
     public EmbeddingModel embeddingModel(OpenAiApi openAiApi) {
         OpenAiEmbeddingOptions options = OpenAiEmbeddingOptions.builder()
                 .model(embeddingModelName)
                 .build();
 
-        return new OpenAiEmbeddingModel(openAiApi, MetadataMode.EMBED, options);
-    }
-
-    private WebClient.Builder createWebClientBuilder() {
-        // 配置连接池：防止高并发时连接泄漏
-        ConnectionProvider connectionProvider = ConnectionProvider.builder("ai-pool")
-                .maxConnections(50)                    // 最大连接数
-                .maxIdleTime(Duration.ofMinutes(5))    // 空闲连接最大存活时间
-                .maxLifeTime(Duration.ofMinutes(30))   // 连接最大生命周期
-                .pendingAcquireTimeout(Duration.ofSeconds(60)) // 等待可用连接超时
-                .evictInBackground(Duration.ofMinutes(1)) // 后台清理闲置连接间隔
-                .build();
-
-        HttpClient httpClient = HttpClient.create(connectionProvider)
-                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
-                .doOnConnected(conn -> conn
-                        .addHandlerLast(new ReadTimeoutHandler(readTimeout.toMillis(), TimeUnit.MILLISECONDS))
-                        .addHandlerLast(new WriteTimeoutHandler(connectTimeout.toMillis(), TimeUnit.MILLISECONDS)))
-                .responseTimeout(readTimeout);
-
-        return WebClient.builder()
-                .clientConnector(new ReactorClientHttpConnector(httpClient));
+        return new CoalescingEmbeddingModel(
+                new OpenAiEmbeddingModel(openAiApi, MetadataMode.EMBED, options), embeddingModelName);
     }
 }
@@ -1,11 +1,13 @@
 package com.redmoon2333.config;
 
+import com.redmoon2333.util.CompiledPromptTemplate;
 import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Component;
+import cn.hutool.crypto.SecureUtil;
 import org.yaml.snakeyaml.Yaml;
 
 import java.io.IOException;
@@ -15,15 +17,23 @@ import java.util.Map;
 /**
  * 提示词配置管理类
  * Why: 将硬编码的提示词迁移到配置文件，支持集中管理和热更新
+ *
+ * 加载（及 reload）时一次性完成：
+ * - 系统提示词取出为不可变字符串，并计算稳定的前缀ID（内容摘要）
+ * - 含变量的模板（策划案、RAG上下文）预编译为 CompiledPromptTemplate，请求时只替换变量槽位
+ * 所有结果放在一个不可变快照中整体替换，热更新期间不会读到新旧混杂的提示词
  */
 @Component
 public class PromptConfig {
     private static final Logger logger = LoggerFactory.getLogger(PromptConfig.class);
 
+    // 提示词ID长度（sha256 前16位十六进制）
+    private static final int PROMPT_ID_LENGTH = 16;
+
     @Value("classpath:/prompttemplate/system-prompts.yml")
     private Resource promptsResource;
 
-    private Map<String, Object> prompts;
+    private volatile PromptSnapshot snapshot;
 
     @PostConstruct
     public void init() {
@@ -37,8 +47,24 @@ public class PromptConfig {
         try {
             Yaml yaml = new Yaml();
             String content = new String(promptsResource.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
-            prompts = yaml.load(content);
-            logger.info("提示词配置加载成功");
+            Map<String, Object> prompts = yaml.load(content);
+
+            String systemPrompt = getPrompt(prompts, "system", "base");
+            String systemPromptWithTools = getPrompt(prompts, "system", "with_tools");
+            String planGeneratorPrompt = getPrompt(prompts, "plan_generator");
+            String ragContextTemplate = getPrompt(prompts, "rag", "context_template");
+
+            snapshot = new PromptSnapshot(
+                    systemPrompt,
+                    promptId(systemPrompt),
+                    systemPromptWithTools,
+                    promptId(systemPromptWithTools),
+                    CompiledPromptTemplate.compile(planGeneratorPrompt),
+                    promptId(planGeneratorPrompt),
+                    CompiledPromptTemplate.compile(ragContextTemplate)
+            );
+            logger.info("提示词配置加载成功: systemPromptId={}, toolPromptId={}, planGeneratorVersion={}",
+                    snapshot.systemPromptId(), snapshot.systemPromptWithToolsId(), snapshot.planGeneratorVersion());
         } catch (IOException e) {
             logger.error("加载提示词配置失败", e);
             throw new RuntimeException("无法加载提示词配置", e);
@@ -49,39 +75,89 @@ public class PromptConfig {
      * 获取基础系统提示词
      */
     public String getSystemPrompt() {
-        return getPrompt("system", "base");
+        return current().systemPrompt();
+    }
+
+    /**
+     * 获取基础系统提示词ID
+     * Why: 请求合并key、响应缓存key只需带上这个短ID，不必每次对整段系统提示词做摘要
+     */
+    public String getSystemPromptId() {
+        return current().systemPromptId();
     }
 
     /**
      * 获取带工具的系统提示词
      */
     public String getSystemPromptWithTools() {
-        return getPrompt("system", "with_tools");
+        return current().systemPromptWithTools();
+    }
+
+    /**
+     * 获取带工具的系统提示词ID
+     */
+    public String getSystemPromptWithToolsId() {
+        return current().systemPromptWithToolsId();
     }
 
     /**
      * 获取策划案生成提示词
      */
     public String getPlanGeneratorPrompt() {
-        return getPrompt("plan_generator");
+        return current().planGeneratorTemplate().getSource();
+    }
+
+    /**
+     * 渲染策划案生成提示词
+     *
+     * @param params 模板变量（theme、organizer 等）
+     * @return 渲染后的提示词
+     */
+    public String renderPlanGeneratorPrompt(Map<String, ?> params) {
+        return current().planGeneratorTemplate().render(params);
+    }
+
+    /**
+     * 获取策划案提示词模板版本
+     */
+    public String getPlanGeneratorPromptVersion() {
+        return current().planGeneratorVersion();
     }
 
     /**
      * 获取RAG上下文模板
      */
     public String getRagContextTemplate() {
-        return getPrompt("rag", "context_template");
+        return current().ragContextTemplate().getSource();
     }
 
     /**
-     * 通用获取提示词方法
+     * 渲染RAG上下文模板
+     *
+     * @param context 检索到的参考资料
+     * @param question 用户问题
+     * @return 渲染后的提示词
      */
-    @SuppressWarnings("unchecked")
-    private String getPrompt(String... keys) {
-        if (prompts == null) {
+    public String renderRagContext(String context, String question) {
+        return current().ragContextTemplate().render(Map.of(
+                "context", context != null ? context : "",
+                "question", question != null ? question : ""));
+    }
+
+    private PromptSnapshot current() {
+        PromptSnapshot current = snapshot;
+        if (current == null) {
             loadPrompts();
+            current = snapshot;
         }
+        return current;
+    }
 
+    /**
+     * 通用获取提示词方法
+     */
+    @SuppressWarnings("unchecked")
+    private String getPrompt(Map<String, Object> prompts, String... keys) {
         Object current = prompts;
         for (String key : keys) {
             if (current instanceof Map) {
@@ -95,6 +171,10 @@ public class PromptConfig {
         return current != null ? current.toString() : "";
     }
 
+    private String promptId(String prompt) {
+        return SecureUtil.sha256(prompt).substring(0, PROMPT_ID_LENGTH);
+    }
+
     /**
      * 重新加载提示词（支持热更新）
      */
@@ -102,4 +182,17 @@ public class PromptConfig {
         loadPrompts();
         logger.info("提示词配置已重新加载");
     }
+
+    /**
+     * 一次加载得到的全部提示词
+     */
+    private record PromptSnapshot(
+        String systemPrompt,
+        String systemPromptId,
+        String systemPromptWithTools,
+        String systemPromptWithToolsId,
+        CompiledPromptTemplate planGeneratorTemplate,
+        String planGeneratorVersion,
+        CompiledPromptTemplate ragContextTemplate
+    ) {}
 }
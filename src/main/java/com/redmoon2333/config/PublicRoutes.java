@@ -0,0 +1,189 @@
+package com.redmoon2333.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 公开路由分类（JwtAuthenticationFilter 与 SecurityConfig 共用）
+ *
+ * 两类公开路由：
+ * - 匿名路由：不需要任何身份信息，JWT过滤器直接跳过，Spring Security 放行
+ *   （静态资源、上传文件、登录注册、公开查询接口）
+ * - 可选认证路由：Spring Security 放行，但携带令牌时仍由过滤器解析身份，
+ *   权限由控制器或 AOP 自行检查（如 /api/auth/logout、/api/ai/**）
+ * 匿名路由总是可选认证路由的子集
+ *
+ * 路由在启动时编译成按路径段索引的前缀树，每个节点用位掩码记录允许的HTTP方法，
+ * 一次匹配只按段向下走一遍，不做逐条 equals/startsWith
+ *
+ * Why: 之前过滤器的 shouldNotFilter 对每个请求（包括每一张 /uploads/ 图片）逐条比较路径与方法，
+ *      SecurityConfig 再按另一份几乎相同但不一致的列表匹配一遍
+ */
+@Component
+public class PublicRoutes {
+
+    private static final int GET = 1;
+    private static final int POST = 1 << 1;
+    private static final int PUT = 1 << 2;
+    private static final int DELETE = 1 << 3;
+    private static final int PATCH = 1 << 4;
+    private static final int HEAD = 1 << 5;
+    private static final int OPTIONS = 1 << 6;
+    private static final int OTHER = 1 << 7;
+    private static final int ANY = -1;
+
+    private final Node anonymousRoutes = new Node();
+    private final Node permittedRoutes = new Node();
+
+    private final RequestMatcher permittedMatcher = this::isPermitted;
+
+    public PublicRoutes() {
+        // CORS预检
+        anonymous(OPTIONS, "/**");
+        // 登录注册
+        anonymous(ANY, "/api/auth/login");
+        anonymous(ANY, "/api/auth/register");
+        anonymous(ANY, "/api/auth/check-username");
+        // 首页与静态资源
+        anonymous(ANY, "/");
+        anonymous(ANY, "/index.html");
+        anonymous(ANY, "/ai-test.html");
+        anonymous(ANY, "/favicon.ico");
+        anonymous(ANY, "/static/**");
+        anonymous(ANY, "/css/**");
+        anonymous(ANY, "/js/**");
+        anonymous(ANY, "/images/**");
+        // 上传的文件
+        anonymous(ANY, "/uploads/**");
+        // 公开API
+        anonymous(ANY, "/api/public/**");
+        // 活动、往届活动查询
+        anonymous(GET, "/api/activities/**");
+        anonymous(GET, "/api/past-activities/**");
+        // 日常图片查询 - "我们的日常"板块所有人可见
+        anonymous(GET, "/api/daily-images");
+        // 用户公开信息查询
+        anonymous(GET, "/api/users/alumni");
+        anonymous(GET, "/api/users/search/name/**");
+
+        // 认证相关其余接口（登出、当前用户信息等由控制器自行验证令牌）
+        optional(ANY, "/api/auth/**");
+        // 调试接口
+        optional(ANY, "/api/users/debug/**");
+        // MQ健康检查
+        optional(ANY, "/api/mq/health");
+        // AI接口（会验证JWT，权限检查由AOP处理）
+        optional(ANY, "/api/ai/**");
+    }
+
+    /**
+     * 是否为匿名路由（JWT过滤器跳过）
+     */
+    public boolean isAnonymous(HttpServletRequest request) {
+        return matches(anonymousRoutes, request.getMethod(), request.getRequestURI());
+    }
+
+    /**
+     * 是否为 Spring Security 放行的路由（匿名路由或可选认证路由）
+     */
+    public boolean isPermitted(HttpServletRequest request) {
+        return matches(permittedRoutes, request.getMethod(), request.getRequestURI());
+    }
+
+    /**
+     * 放行路由匹配器（供 SecurityConfig 使用）
+     */
+    public RequestMatcher permittedMatcher() {
+        return permittedMatcher;
+    }
+
+    private void anonymous(int methods, String pattern) {
+        add(anonymousRoutes, methods, pattern);
+        add(permittedRoutes, methods, pattern);
+    }
+
+    private void optional(int methods, String pattern) {
+        add(permittedRoutes, methods, pattern);
+    }
+
+    /**
+     * 加入一条路由，以 /** 结尾表示该路径及其所有子路径
+     */
+    private static void add(Node root, int methods, String pattern) {
+        boolean subtree = pattern.endsWith("/**");
+        String path = subtree ? pattern.substring(0, pattern.length() - 3) : pattern;
+        Node node = root;
+        for (String segment : path.split("/")) {
+            if (!segment.isEmpty()) {
+                node = node.children.computeIfAbsent(segment, s -> new Node());
+            }
+        }
+        if (subtree) {
+            node.subtreeMethods |= methods;
+        } else {
+            node.exactMethods |= methods;
+        }
+    }
+
+    private static boolean matches(Node root, String method, String path) {
+        if (path == null) {
+            return false;
+        }
+        int methodBit = methodBit(method);
+        Node node = root;
+        int length = path.length();
+        int start = 0;
+        while (true) {
+            if ((node.subtreeMethods & methodBit) != 0) {
+                return true;
+            }
+            // 跳过连续的 '/'
+            while (start < length && path.charAt(start) == '/') {
+                start++;
+            }
+            if (start >= length) {
+                return (node.exactMethods & methodBit) != 0;
+            }
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+            node = node.children.get(path.substring(start, end));
+            if (node == null) {
+                return false;
+            }
+            start = end;
+        }
+    }
+
+    private static int methodBit(String method) {
+        if (method == null) {
+            return OTHER;
+        }
+        return switch (method) {
+            case "GET" -> GET;
+            case "POST" -> POST;
+            case "PUT" -> PUT;
+            case "DELETE" -> DELETE;
+            case "PATCH" -> PATCH;
+            case "HEAD" -> HEAD;
+            case "OPTIONS" -> OPTIONS;
+            default -> OTHER;
+        };
+    }
+
+    /**
+     * 前缀树节点
+     * exactMethods: 路径恰好到此结束时允许的方法
+     * subtreeMethods: 此路径及所有子路径允许的方法
+     */
+    private static final class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private int exactMethods;
+        private int subtreeMethods;
+    }
+}
@@ -7,11 +7,14 @@ import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.chat.messages.*;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Component;
 
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Redis持久化的对话记忆实现
@@ -23,7 +26,17 @@ import java.util.List;
  * 3. 可设置过期时间自动清理
  * 4. 支持滑动窗口控制Token消耗
  *
+ * 存储结构：
+ * - chat:memory:list:{conversationId}：Redis List，每个元素是一条消息的JSON
+ * - chat:memory:stats:{conversationId}：Hash，按消息类型维护条数，并记录累计写入条数 pushed
+ * 消息序号 seq = 累计写入前已写入的条数，单调递增，滑动窗口淘汰旧消息后也不变，用作分页游标
+ *
+ * Why: 之前整段历史存成一个JSON字符串，前端只看最新一屏、统计只数条数也要读取并反序列化全部消息；
+ *      改为List后按窗口 LRANGE，统计直接读计数，读取开销与请求的条数成正比
+ *
  * Warning: 对话历史会随时间增长，建议配合滑动窗口策略控制Token消耗
+ * Warning: 旧版本的JSON字符串（chat:memory:{conversationId}）在首次读取时迁移；
+ *          AIChatService 总是先 get 再 add，因此迁移先于写入发生
  */
 @Component
 public class RedisChatMemory implements ChatMemory {
@@ -35,14 +48,84 @@ public class RedisChatMemory implements ChatMemory {
     // Why: 设置7天过期时间，避免Redis内存无限增长
     private static final Duration EXPIRATION = Duration.ofDays(7);
 
-    // Redis key前缀，避免与其他业务key冲突
-    private static final String KEY_PREFIX = "chat:memory:";
+    // 旧版本整段JSON的key前缀（仅用于迁移）
+    private static final String LEGACY_KEY_PREFIX = "chat:memory:";
+    private static final String LIST_KEY_PREFIX = "chat:memory:list:";
+    private static final String STATS_KEY_PREFIX = "chat:memory:stats:";
+    private static final String FIELD_PUSHED = "pushed";
 
     // Why: 最大保留20轮对话（40条消息，每轮包含user+assistant），控制Token消耗
     // 估算：每轮约500-1000 tokens，20轮约10000-20000 tokens，在大多数模型限制内
     private static final int MAX_MESSAGE_PAIRS = 20;
     private static final int MAX_MESSAGES = MAX_MESSAGE_PAIRS * 2;
 
+    /**
+     * 追加消息并执行滑动窗口淘汰，同时维护分类型计数
+     * KEYS[1]=消息List，KEYS[2]=统计Hash；ARGV[1]=最大条数，ARGV[2]=过期秒数，之后每两个参数为 (类型, JSON)
+     */
+    private static final String APPEND_BODY = """
+            local max = tonumber(ARGV[1])
+            local added = 0
+            for i = 3, #ARGV, 2 do
+              redis.call('RPUSH', KEYS[1], ARGV[i + 1])
+              redis.call('HINCRBY', KEYS[2], ARGV[i], 1)
+              added = added + 1
+            end
+            redis.call('HINCRBY', KEYS[2], 'pushed', added)
+            local len = redis.call('LLEN', KEYS[1])
+            while len > max do
+              local ok, record = pcall(cjson.decode, redis.call('LPOP', KEYS[1]))
+              if ok and type(record) == 'table' and record['type'] then
+                redis.call('HINCRBY', KEYS[2], record['type'], -1)
+              end
+              len = len - 1
+            end
+            redis.call('EXPIRE', KEYS[1], ARGV[2])
+            redis.call('EXPIRE', KEYS[2], ARGV[2])
+            return len
+            """;
+
+    private static final RedisScript<Long> APPEND_SCRIPT = new DefaultRedisScript<>(APPEND_BODY, Long.class);
+
+    /**
+     * 迁移旧版本整段JSON：旧key仍存在时删除并追加，已被其他请求迁移时返回 -1 且不写入
+     * KEYS[3]=旧版本key，其余同 APPEND_SCRIPT
+     * Why: 两个并发的首次读取都会读到旧JSON，只有先执行脚本的一方追加，历史不会重复
+     */
+    private static final RedisScript<Long> MIGRATE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[3]) == 0 then
+              return -1
+            end
+            redis.call('DEL', KEYS[3])
+            """ + APPEND_BODY, Long.class);
+
+    /**
+     * 按游标读取一个窗口
+     * ARGV[1]=游标（只返回 seq 小于它的消息，-1 表示从最新开始），ARGV[2]=条数
+     * 返回 {列表长度, 首条消息seq, 窗口起始下标, 消息JSON...}
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> RANGE_SCRIPT = new DefaultRedisScript<>("""
+            local len = redis.call('LLEN', KEYS[1])
+            local pushed = tonumber(redis.call('HGET', KEYS[2], 'pushed') or '0')
+            if pushed < len then pushed = len end
+            local first = pushed - len
+            local before = tonumber(ARGV[1])
+            local stop = len
+            if before >= 0 then
+              stop = math.min(len, math.max(0, before - first))
+            end
+            local start = math.max(0, stop - tonumber(ARGV[2]))
+            local result = {len, first, start}
+            if stop > start then
+              local items = redis.call('LRANGE', KEYS[1], start, stop - 1)
+              for i = 1, #items do
+                result[#result + 1] = items[i]
+              end
+            end
+            return result
+            """, List.class);
+
     public RedisChatMemory(StringRedisTemplate redisTemplate, ObjectMapper objectMapper) {
         this.redisTemplate = redisTemplate;
         this.objectMapper = objectMapper;
@@ -60,33 +143,14 @@ public class RedisChatMemory implements ChatMemory {
             return;
         }
 
-        String key = buildKey(conversationId);
+        List<MessageRecord> records = new ArrayList<>();
+        for (org.springframework.ai.chat.messages.Message msg : messages) {
+            records.add(new MessageRecord(msg.getClass().getSimpleName(), msg.getText()));
+        }
 
         try {
-            // 获取现有历史
-            List<MessageRecord> history = getHistory(key);
-
-            // 添加新消息
-            for (org.springframework.ai.chat.messages.Message msg : messages) {
-                history.add(new MessageRecord(
-                    msg.getClass().getSimpleName(),
-                    msg.getText()
-                ));
-            }
-
-            // Why: 滑动窗口策略 - 只保留最近MAX_MESSAGES条消息
-            // 避免Token消耗过多导致API调用失败或成本过高
-            if (history.size() > MAX_MESSAGES) {
-                int removeCount = history.size() - MAX_MESSAGES;
-                history = history.subList(removeCount, history.size());
-                logger.debug("触发滑动窗口清理: conversationId={}, 移除{}条旧消息", conversationId, removeCount);
-            }
-
-            // 保存回Redis并设置过期时间
-            String json = objectMapper.writeValueAsString(history);
-            redisTemplate.opsForValue().set(key, json, EXPIRATION);
-
-            logger.debug("对话历史已保存到Redis: conversationId={}, 消息数={}", conversationId, history.size());
+            long size = append(conversationId, records);
+            logger.debug("对话历史已保存到Redis: conversationId={}, 消息数={}", conversationId, size);
         } catch (JsonProcessingException e) {
             logger.error("保存对话历史到Redis失败: conversationId={}", conversationId, e);
         }
@@ -100,16 +164,20 @@ public class RedisChatMemory implements ChatMemory {
      */
     @Override
     public List<org.springframework.ai.chat.messages.Message> get(String conversationId) {
-        String key = buildKey(conversationId);
-
         try {
-            List<MessageRecord> records = getHistory(key);
-            List<org.springframework.ai.chat.messages.Message> messages = new ArrayList<>();
+            List<String> items = redisTemplate.opsForList().range(listKey(conversationId), 0, -1);
+            if ((items == null || items.isEmpty()) && migrateLegacy(conversationId)) {
+                items = redisTemplate.opsForList().range(listKey(conversationId), 0, -1);
+            }
 
-            for (MessageRecord record : records) {
-                org.springframework.ai.chat.messages.Message msg = deserializeMessage(record);
-                if (msg != null) {
-                    messages.add(msg);
+            List<org.springframework.ai.chat.messages.Message> messages = new ArrayList<>();
+            if (items != null) {
+                for (String item : items) {
+                    MessageRecord record = parseRecord(item);
+                    org.springframework.ai.chat.messages.Message msg = record != null ? deserializeMessage(record) : null;
+                    if (msg != null) {
+                        messages.add(msg);
+                    }
                 }
             }
 
@@ -128,16 +196,36 @@ public class RedisChatMemory implements ChatMemory {
      * @return 格式化的历史记录列表
      */
     public List<ChatMessageRecord> getChatHistory(String conversationId) {
-        String key = buildKey(conversationId);
-        List<MessageRecord> records = getHistory(key);
-        List<ChatMessageRecord> result = new ArrayList<>();
+        return getChatHistory(conversationId, MAX_MESSAGES, null).messages();
+    }
+
+    /**
+     * 分页获取对话历史记录（用于前端展示）
+     * Why: 只读取请求的窗口，打开长对话时的Redis I/O和JSON解析量有上限
+     *
+     * @param conversationId 对话ID
+     * @param limit 最多返回的条数
+     * @param before 游标，只返回 seq 小于它的消息；为null时返回最新的 limit 条
+     * @return 一页历史记录（按时间正序）
+     */
+    public ChatHistoryPage getChatHistory(String conversationId, int limit, Long before) {
+        int size = Math.max(1, Math.min(limit, MAX_MESSAGES));
+        long cursor = before != null ? Math.max(0, before) : -1;
+
+        List<?> raw = readRange(conversationId, cursor, size);
+        if (parseLong(raw.get(0)) == 0 && migrateLegacy(conversationId)) {
+            raw = readRange(conversationId, cursor, size);
+        }
 
-        for (int i = 0; i < records.size(); i++) {
-            MessageRecord record = records.get(i);
+        long firstSeq = parseLong(raw.get(1));
+        long start = parseLong(raw.get(2));
+        List<ChatMessageRecord> result = new ArrayList<>();
+        for (int i = 3; i < raw.size(); i++) {
+            MessageRecord record = parseRecord(String.valueOf(raw.get(i)));
             // 跳过系统消息，只保留用户和AI的对话
-            if (!"SystemMessage".equals(record.type)) {
+            if (record != null && !"SystemMessage".equals(record.type)) {
                 result.add(new ChatMessageRecord(
-                    i,
+                    (int) (firstSeq + start + i - 3),
                     "UserMessage".equals(record.type) ? "user" : "assistant",
                     record.content,
                     record.type
@@ -145,28 +233,32 @@ public class RedisChatMemory implements ChatMemory {
             }
         }
 
-        return result;
+        boolean hasMore = start > 0;
+        return new ChatHistoryPage(result, hasMore ? firstSeq + start : null, hasMore);
     }
 
     /**
      * 获取对话统计信息
+     * Why: 直接读取写入时维护的分类型计数，不再加载全部消息
      *
      * @param conversationId 对话ID
      * @return 统计信息
      */
     public ChatHistoryStats getStats(String conversationId) {
-        String key = buildKey(conversationId);
-        List<MessageRecord> records = getHistory(key);
+        Map<Object, Object> counters = redisTemplate.opsForHash().entries(statsKey(conversationId));
+        if (counters.isEmpty() && migrateLegacy(conversationId)) {
+            counters = redisTemplate.opsForHash().entries(statsKey(conversationId));
+        }
 
-        long userCount = records.stream().filter(r -> "UserMessage".equals(r.type)).count();
-        long assistantCount = records.stream().filter(r -> "AssistantMessage".equals(r.type)).count();
-        long systemCount = records.stream().filter(r -> "SystemMessage".equals(r.type)).count();
+        int userCount = (int) parseLong(counters.get("UserMessage"));
+        int assistantCount = (int) parseLong(counters.get("AssistantMessage"));
+        int systemCount = (int) parseLong(counters.get("SystemMessage"));
 
         return new ChatHistoryStats(
-            records.size(),
-            (int) userCount,
-            (int) assistantCount,
-            (int) systemCount,
+            userCount + assistantCount + systemCount,
+            userCount,
+            assistantCount,
+            systemCount,
             MAX_MESSAGES,
             MAX_MESSAGE_PAIRS
         );
@@ -179,33 +271,87 @@ public class RedisChatMemory implements ChatMemory {
      */
     @Override
     public void clear(String conversationId) {
-        String key = buildKey(conversationId);
-        redisTemplate.delete(key);
+        redisTemplate.delete(List.of(listKey(conversationId), statsKey(conversationId), legacyKey(conversationId)));
         logger.info("对话历史已清除: conversationId={}", conversationId);
     }
 
-    /**
-     * 构建Redis key
-     */
-    private String buildKey(String conversationId) {
-        return KEY_PREFIX + conversationId;
+    private String listKey(String conversationId) {
+        return LIST_KEY_PREFIX + conversationId;
+    }
+
+    private String statsKey(String conversationId) {
+        return STATS_KEY_PREFIX + conversationId;
+    }
+
+    private String legacyKey(String conversationId) {
+        return LEGACY_KEY_PREFIX + conversationId;
+    }
+
+    private long append(String conversationId, List<MessageRecord> records) throws JsonProcessingException {
+        Long size = redisTemplate.execute(APPEND_SCRIPT,
+                List.of(listKey(conversationId), statsKey(conversationId)), appendArgs(records));
+        return size != null ? size : 0;
+    }
+
+    private Object[] appendArgs(List<MessageRecord> records) throws JsonProcessingException {
+        List<String> args = new ArrayList<>(records.size() * 2 + 2);
+        args.add(String.valueOf(MAX_MESSAGES));
+        args.add(String.valueOf(EXPIRATION.toSeconds()));
+        for (MessageRecord record : records) {
+            args.add(record.type);
+            args.add(objectMapper.writeValueAsString(record));
+        }
+        return args.toArray();
+    }
+
+    private List<?> readRange(String conversationId, long before, int limit) {
+        List<?> raw = redisTemplate.execute(RANGE_SCRIPT,
+                List.of(listKey(conversationId), statsKey(conversationId)),
+                String.valueOf(before), String.valueOf(limit));
+        return raw != null && raw.size() >= 3 ? raw : List.of(0L, 0L, 0L);
     }
 
     /**
-     * 从Redis获取历史记录
+     * 把旧版本的整段JSON迁移为List结构（删除旧key与追加在同一脚本内完成）
+     *
+     * @return 旧数据是否已迁移（由本次或并发的另一请求完成），为true时调用方重新读取
      */
-    private List<MessageRecord> getHistory(String key) {
-        String json = redisTemplate.opsForValue().get(key);
+    private boolean migrateLegacy(String conversationId) {
+        String legacyKey = legacyKey(conversationId);
+        String json = redisTemplate.opsForValue().get(legacyKey);
         if (json == null || json.isEmpty()) {
-            return new ArrayList<>();
+            return false;
         }
 
         try {
-            return objectMapper.readValue(json,
+            List<MessageRecord> records = objectMapper.readValue(json,
                 objectMapper.getTypeFactory().constructCollectionType(List.class, MessageRecord.class));
+            Long result = redisTemplate.execute(MIGRATE_SCRIPT,
+                    List.of(listKey(conversationId), statsKey(conversationId), legacyKey), appendArgs(records));
+            if (result != null && result >= 0) {
+                logger.info("对话历史已迁移为List结构: conversationId={}, 消息数={}", conversationId, records.size());
+            }
+            return true;
+        } catch (JsonProcessingException e) {
+            logger.error("迁移对话历史失败: key={}", legacyKey, e);
+            return false;
+        }
+    }
+
+    private MessageRecord parseRecord(String json) {
+        try {
+            return objectMapper.readValue(json, MessageRecord.class);
         } catch (JsonProcessingException e) {
-            logger.error("解析对话历史失败: key={}", key, e);
-            return new ArrayList<>();
+            logger.error("解析对话消息失败: {}", json, e);
+            return null;
+        }
+    }
+
+    private long parseLong(Object value) {
+        try {
+            return value != null ? Long.parseLong(value.toString()) : 0L;
+        } catch (NumberFormatException e) {
+            return 0L;
         }
     }
 
@@ -236,9 +382,16 @@ public class RedisChatMemory implements ChatMemory {
 
     /**
      * 前端展示用的对话记录
+     * index 为消息序号 seq，可作为下一页的游标
      */
     public record ChatMessageRecord(int index, String role, String content, String rawType) {}
 
+    /**
+     * 一页对话历史
+     * nextCursor: 加载更早消息时作为 before 参数传入，没有更早消息时为null
+     */
+    public record ChatHistoryPage(List<ChatMessageRecord> messages, Long nextCursor, boolean hasMore) {}
+
     /**
      * 对话历史统计信息
      */
@@ -1,23 +1,16 @@
 package com.redmoon2333.config;
 
-import io.netty.channel.ChannelOption;
-import io.netty.handler.timeout.ReadTimeoutHandler;
-import io.netty.handler.timeout.WriteTimeoutHandler;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.openai.OpenAiChatModel;
 import org.springframework.ai.openai.OpenAiChatOptions;
 import org.springframework.ai.openai.api.OpenAiApi;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
-import org.springframework.http.client.reactive.ReactorClientHttpConnector;
-import org.springframework.web.reactive.function.client.WebClient;
-import reactor.netty.http.client.HttpClient;
-
-import java.time.Duration;
-import java.util.concurrent.TimeUnit;
+import org.springframework.retry.support.RetryTemplate;
 
 /**
  * LLM配置类（ECNU重构版）
@@ -34,7 +27,7 @@ import java.util.concurrent.TimeUnit;
  * Why: ECNU API 是 OpenAI 兼容接口，使用 OpenAI 模块而非 DashScope 模块
  *
  * 重要：
- * 1. 流式响应可能需要较长时间，必须配置足够的超时时间
+ * 1. 流式响应可能需要较长时间，必须配置足够的超时时间（由 AiHttpClientFactory 统一配置）
  * 2. Spring AI 1.0.0 的 MessageChatMemoryAdvisor 不支持 StreamAroundAdvisor，
  *    因此不使用 defaultAdvisors，改为在 Service 层手动管理对话记忆
  */
@@ -53,44 +46,30 @@ public class SaaLLMConfig {
     @Value("${spring.ai.openai.base-url}")
     private String baseUrl;
 
-    @Value("${spring.ai.openai.timeout.connect:30s}")
-    private Duration connectTimeout;
-
-    @Value("${spring.ai.openai.timeout.read:300s}")
-    private Duration readTimeout;
+    @Autowired
+    private AiHttpClientFactory aiHttpClientFactory;
 
     /**
-     * 创建带超时配置的 WebClient.Builder
-     *
-     * Why: Spring AI 1.0.0 默认的 WebClient 超时配置不足
-     *      流式响应可能需要几分钟，必须配置足够的读取超时
-     *      否则会出现 PrematureCloseException: Connection prematurely closed DURING response
-     *
-     * Warning: 不使用 @Bean 避免与 Spring AI 自动配置冲突
+     * Why: 所有模型共用 AiHttpClientFactory 的连接池，超时与连接池参数统一在工厂中配置
+     *      流式响应的读取超时见 spring.ai.openai.timeout.read
      */
-    private WebClient.Builder createWebClientBuilder() {
-        HttpClient httpClient = HttpClient.create()
-                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
-                .doOnConnected(conn -> conn
-                        .addHandlerLast(new ReadTimeoutHandler(readTimeout.toMillis(), TimeUnit.MILLISECONDS))
-                        .addHandlerLast(new WriteTimeoutHandler(connectTimeout.toMillis(), TimeUnit.MILLISECONDS)))
-                .responseTimeout(readTimeout);
-
-        return WebClient.builder()
-                .clientConnector(new ReactorClientHttpConnector(httpClient));
-    }
-
     private OpenAiApi createOpenAiApi() {
         return OpenAiApi.builder()
                 .baseUrl(baseUrl)
                 .apiKey(apiKey)
-                .webClientBuilder(createWebClientBuilder())
+                .webClientBuilder(aiHttpClientFactory.webClientBuilder())
+                .restClientBuilder(aiHttpClientFactory.restClientBuilder())
                 .build();
     }
 
+    /**
+     * Why: Spring AI 默认 RetryTemplate 会对同步调用最多重试10次，与 AiResilienceService 的重试叠加后
+     *      上游降级时请求被放大数十倍；这里只尝试一次，重试与熔断统一交给 AiResilienceService
+     */
     private ChatModel createChatModel(String modelName) {
         return OpenAiChatModel.builder()
                 .openAiApi(createOpenAiApi())
+                .retryTemplate(RetryTemplate.builder().maxAttempts(1).build())
                 .defaultOptions(OpenAiChatOptions.builder()
                         .model(modelName)
                         .temperature(0.7)
@@ -1,9 +1,9 @@
 package com.redmoon2333.config;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
@@ -26,6 +26,13 @@ public class SecurityConfig {
     
     @Autowired
     private JwtAuthenticationFilter jwtAuthenticationFilter;
+
+    @Autowired
+    private PublicRoutes publicRoutes;
+
+    // BCrypt 强度，调高后已有用户在下次登录时自动按新强度重新哈希（见 LoginProtectionService）
+    @Value("${security.password.bcrypt-strength:10}")
+    private int bcryptStrength;
     
     /**
      * CORS配置
@@ -88,7 +95,7 @@ public class SecurityConfig {
      */
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new BCryptPasswordEncoder(bcryptStrength);
     }
     
     /**
@@ -120,33 +127,8 @@ public class SecurityConfig {
             
             // 配置请求授权
             .authorizeHttpRequests(auth -> auth
-                // 允许OPTIONS请求（CORS预检）
-                .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
-                // 允许注册和登录接口访问
-                .requestMatchers("/api/auth/**").permitAll()
-                // 允许静态资源访问
-                .requestMatchers("/css/**", "/js/**", "/images/**", "/static/**").permitAll()
-                // 允许文件访问
-                .requestMatchers("/uploads/**").permitAll()
-                // 允许首页访问
-                .requestMatchers("/", "/index.html", "/ai-test.html", "/favicon.ico").permitAll()
-                // 允许公开API访问
-                .requestMatchers("/api/public/**").permitAll()
-                // 允许活动查询接口（GET方法）公开访问
-                .requestMatchers(HttpMethod.GET, "/api/activities/**").permitAll()
-                // 允许往届活动查询接口（GET方法）公开访问
-                .requestMatchers(HttpMethod.GET, "/api/past-activities/**").permitAll()
-                // 允许日常图片查询接口（GET方法）公开访问 - "我们的日常"板块所有人可见
-                .requestMatchers(HttpMethod.GET, "/api/daily-images").permitAll()
-                // 允许用户相关公开接口访问
-                .requestMatchers(HttpMethod.GET, "/api/users/alumni").permitAll()
-                .requestMatchers(HttpMethod.GET, "/api/users/search/name/**").permitAll()
-                // 允许调试接口访问
-                .requestMatchers("/api/users/debug/**").permitAll()
-                // 允许MQ健康检查接口公开访问
-                .requestMatchers("/api/mq/health").permitAll()
-                // AI接口允许（会验证JWT，权限检查由AOP处理）
-                .requestMatchers("/api/ai/**").permitAll()
+                // 公开路由（匿名路由与可选认证路由，见 PublicRoutes）
+                .requestMatchers(publicRoutes.permittedMatcher()).permitAll()
                 // 任务接口 - 需要认证（权限由注解控制）
                 .requestMatchers("/api/tasks/**").authenticated()
                 // 站内信接口 - 需要认证
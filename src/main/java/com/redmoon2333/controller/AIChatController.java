@@ -10,16 +10,19 @@ import com.redmoon2333.dto.RagChatRequest;
 import com.redmoon2333.exception.ErrorCode;
 import com.redmoon2333.service.AIChatService;
 import com.redmoon2333.util.PermissionUtil;
+import com.redmoon2333.util.StreamCoalescer;
 import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 
+import java.time.Duration;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -39,6 +42,15 @@ public class AIChatController {
 
     @Autowired
     private RedisChatMemory chatMemory;
+
+    @Value("${ai.stream.heartbeat-interval:5s}")
+    private Duration heartbeatInterval;
+
+    @Value("${ai.stream.coalesce-window:40ms}")
+    private Duration coalesceWindow;
+
+    @Value("${ai.stream.coalesce-max-bytes:512}")
+    private int coalesceMaxBytes;
     
     /**
      * AI对话接口（带用户记忆）
@@ -89,7 +101,7 @@ public class AIChatController {
      */
     @PostMapping(value = "/chat-stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     @RequireMemberRole("使用AI流式对话功能")
-    public Flux<String> chatStream(
+    public Flux<ServerSentEvent<String>> chatStream(
             @RequestBody ChatRequest request,
             HttpServletRequest httpRequest) {
         logger.info("收到AI流式对话请求");
@@ -101,12 +113,12 @@ public class AIChatController {
             
             if (userId == null) {
                 logger.warn("AI流式对话请求失败：无法获取用户ID");
-                return Flux.just("{\"error\":\"用户未登录\"}");
+                return toEventStream(Flux.just("{\"error\":\"用户未登录\"}"));
             }
             
             logger.debug("获取到用户ID: {}", userId);
             
-            return aiChatService.chatStream(userId, request.getMessage())
+            return toEventStream(aiChatService.chatStream(userId, request.getMessage())
                     .doOnSubscribe(subscription -> logger.info("客户端开始订阅流式响应，用户ID: {}", userId))
                     .doOnComplete(() -> logger.info("流式对话完成，用户ID: {}", userId))
                     .doOnCancel(() -> logger.warn("客户端取消了流式请求，用户ID: {}", userId))
@@ -133,10 +145,10 @@ public class AIChatController {
                         }
                         // 其他错误返回错误信息
                         return Flux.just("{\"error\":\"" + errorMsg + "\"}");
-                    });
+                    }));
         } catch (Exception e) {
             logger.error("AI流式对话请求处理失败: {}", e.getMessage(), e);
-            return Flux.just("{\"error\":\"AI对话失败: " + e.getMessage() + "\"}");
+            return toEventStream(Flux.just("{\"error\":\"AI对话失败: " + e.getMessage() + "\"}"));
         }
     }
     
@@ -182,18 +194,18 @@ public class AIChatController {
      */
     @PostMapping(value = "/generate-plan-stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     @RequireMemberRole("流式生成活动策划案")
-    public Flux<String> generatePlanStream(@RequestBody PlanGeneratorRequest request) {
+    public Flux<ServerSentEvent<String>> generatePlanStream(@RequestBody PlanGeneratorRequest request) {
         logger.info("收到流式生成策划案请求");
         logger.debug("请求参数: 主题={}", request.getTheme());
         
         // 验证必填参数
         if (request.getTheme() == null || request.getTheme().trim().isEmpty()) {
             logger.warn("流式生成策划案请求失败：活动主题为空");
-            return Flux.just("{\"error\":\"活动主题不能为空\"}");
+            return toEventStream(Flux.just("{\"error\":\"活动主题不能为空\"}"));
         }
         
         logger.debug("开始调用AI服务流式生成策划案");
-        return aiChatService.generatePlanStream(request)
+        return toEventStream(aiChatService.generatePlanStream(request)
                 .doOnSubscribe(subscription -> logger.info("客户端开始订阅流式响应"))
                 .doOnComplete(() -> logger.info("流式策划案生成完成"))
                 .doOnCancel(() -> logger.warn("客户端取消了流式请求"))
@@ -220,7 +232,7 @@ public class AIChatController {
                     }
                     // 其他错误返回错误信息
                     return Flux.just("{\"error\":\"" + errorMsg + "\"}");
-                });
+                }));
     }
     
     /**
@@ -233,7 +245,7 @@ public class AIChatController {
      */
     @PostMapping(value = "/chat-with-rag", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     @RequireMemberRole("使用RAG增强对话")
-    public Flux<String> chatWithRag(
+    public Flux<ServerSentEvent<String>> chatWithRag(
             @RequestBody RagChatRequest request,
             HttpServletRequest httpRequest) {
         logger.info("收到RAG增强对话请求");
@@ -246,7 +258,7 @@ public class AIChatController {
             
             if (userId == null) {
                 logger.warn("RAG对话请求失败：无法获取用户ID");
-                return Flux.just("{\"error\":\"用户未登录\"}");
+                return toEventStream(Flux.just("{\"error\":\"用户未登录\"}"));
             }
             
             logger.debug("获取到用户ID: {}", userId);
@@ -255,7 +267,7 @@ public class AIChatController {
             boolean useRAG = request.getUseRAG() != null ? request.getUseRAG() : true;
             boolean enableTools = request.getEnableTools() != null ? request.getEnableTools() : false;
             
-            return aiChatService.chatWithRag(userId, request.getMessage(), useRAG, enableTools)
+            return toEventStream(aiChatService.chatWithRag(userId, request.getMessage(), useRAG, enableTools)
                     .doOnSubscribe(subscription -> logger.info("客户端开始订阅RAG流式响应，用户ID: {}", userId))
                     .doOnComplete(() -> logger.info("RAG流式对话完成，用户ID: {}", userId))
                     .doOnCancel(() -> logger.warn("客户端取消了RAG流式请求，用户ID: {}", userId))
@@ -277,22 +289,27 @@ public class AIChatController {
                             return Flux.empty();
                         }
                         return Flux.just("{\"error\":\"" + errorMsg + "\"}");
-                    });
+                    }));
         } catch (Exception e) {
             logger.error("RAG对话请求处理失败: {}", e.getMessage(), e);
-            return Flux.just("{\"error\":\"RAG对话失败: " + e.getMessage() + "\"}");
+            return toEventStream(Flux.just("{\"error\":\"RAG对话失败: " + e.getMessage() + "\"}"));
         }
     }
 
     /**
      * 获取当前用户的对话历史
      *
+     * @param limit 最多返回的条数（最新的N条），不传时返回全部保留的消息
+     * @param before 游标，取上一页返回的 nextCursor，用于加载更早的消息
      * @param httpRequest HTTP请求（用于获取当前用户）
      * @return 对话历史列表
      */
     @GetMapping("/chat-history")
     @RequireMemberRole("查看对话历史")
-    public ApiResponse<Map<String, Object>> getChatHistory(HttpServletRequest httpRequest) {
+    public ApiResponse<Map<String, Object>> getChatHistory(
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) Long before,
+            HttpServletRequest httpRequest) {
         logger.info("收到获取对话历史请求");
 
         try {
@@ -306,17 +323,20 @@ public class AIChatController {
 
             String conversationId = "user_" + userId;
 
-            // 获取对话历史
-            List<RedisChatMemory.ChatMessageRecord> history = chatMemory.getChatHistory(conversationId);
+            // 获取对话历史（未指定limit时返回窗口内全部消息，兼容旧前端）
+            RedisChatMemory.ChatHistoryPage page = chatMemory.getChatHistory(
+                    conversationId, limit != null ? limit : Integer.MAX_VALUE, before);
 
             // 获取统计信息
             RedisChatMemory.ChatHistoryStats stats = chatMemory.getStats(conversationId);
 
             Map<String, Object> result = new HashMap<>();
-            result.put("history", history);
+            result.put("history", page.messages());
             result.put("stats", stats);
+            result.put("hasMore", page.hasMore());
+            result.put("nextCursor", page.nextCursor());
 
-            logger.info("获取对话历史成功，用户ID: {}, 消息数: {}", userId, history.size());
+            logger.info("获取对话历史成功，用户ID: {}, 消息数: {}", userId, page.messages().size());
             return ApiResponse.success(result);
         } catch (Exception e) {
             logger.error("获取对话历史失败: {}", e.getMessage(), e);
@@ -356,4 +376,22 @@ public class AIChatController {
             return ApiResponse.error("删除对话历史失败: " + e.getMessage(), ErrorCode.SYSTEM_ERROR.getCode());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 转换为SSE事件流：合并细碎的token增量（见 StreamCoalescer），并在等待期间定时发送注释心跳
+     *
+     * Why: Servlet 容器只有在写出失败时才能发现客户端已断开，首token之前（RAG检索、工具调用、重试退避）
+     *      长时间没有写出，断开无法被感知，上游会继续生成；心跳写出失败后 Spring MVC 取消订阅，
+     *      取消沿 SingleFlight 传到上游，中止 ChatECNU 的HTTP流
+     *
+     * Warning: 心跳是以 ':' 开头的SSE注释行，前端解析时会跳过
+     */
+    private Flux<ServerSentEvent<String>> toEventStream(Flux<String> body) {
+        return StreamCoalescer.coalesce(body, coalesceWindow, coalesceMaxBytes)
+                .map(chunk -> ServerSentEvent.builder(chunk).build())
+                .publish(events -> Flux.merge(events,
+                        Flux.interval(heartbeatInterval)
+                                .map(tick -> ServerSentEvent.<String>builder().comment("keep-alive").build())
+                                .takeUntilOther(events.then())));
+    }
+}
@@ -7,7 +7,11 @@ import com.redmoon2333.entity.ActivationCode;
 import com.redmoon2333.entity.User;
 import com.redmoon2333.exception.BusinessException;
 import com.redmoon2333.service.AuthService;
+import com.redmoon2333.util.ClientIpUtil;
+import com.redmoon2333.util.JwtPrincipal;
 import com.redmoon2333.util.JwtUtil;
+import com.redmoon2333.util.RoleAuthorities;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,15 +38,20 @@ public class AuthController {
     @Autowired
     private JwtUtil jwtUtil;
     
+    @Autowired
+    private ClientIpUtil clientIpUtil;
+    
     /**
      * 用户登录接口
      * @param loginRequest 登录请求参数，包含用户名和密码
      * @param bindingResult 参数验证结果
+     * @param request HTTP请求，用于获取客户端IP
      * @return 登录结果，包含JWT令牌和用户信息
      */
     @PostMapping("/login")
     public ApiResponse<Map<String, Object>> login(@Valid @RequestBody LoginRequest loginRequest,
-                                                 BindingResult bindingResult) {
+                                                 BindingResult bindingResult,
+                                                 HttpServletRequest request) {
         try {
             // 参数验证
             if (bindingResult.hasErrors()) {
@@ -50,7 +59,7 @@ public class AuthController {
             }
             
             // 执行登录，获取包含JWT令牌的结果
-            Map<String, Object> loginResult = authService.login(loginRequest);
+            Map<String, Object> loginResult = authService.login(loginRequest, clientIpUtil.getClientIp(request));
             return ApiResponse.success("登录成功", loginResult);
             
         } catch (BusinessException e) {
@@ -224,7 +233,7 @@ public class AuthController {
             String token = authHeader.substring(7);
             
             // 验证令牌有效性
-            if (!jwtUtil.validateToken(token)) {
+            if (jwtUtil.authenticate(token) == null) {
                 return ApiResponse.error("无效的令牌", 401);
             }
             
@@ -262,12 +271,13 @@ public class AuthController {
             String token = authHeader.substring(7);
             
             // 验证令牌有效性
-            if (!jwtUtil.validateToken(token)) {
+            JwtPrincipal principal = jwtUtil.authenticate(token);
+            if (principal == null) {
                 return ApiResponse.error("无效的令牌", 401);
             }
             
-            // 检查是否具有部长权限
-            if (!jwtUtil.hasRole(token, "部长")) {
+            // 检查是否具有部长权限（含副部长）
+            if (!principal.hasAnyRole(RoleAuthorities.MINISTER_OR_DEPUTY)) {
                 return ApiResponse.error("权限不足，只有部长才能撤销用户令牌", 403);
             }
             
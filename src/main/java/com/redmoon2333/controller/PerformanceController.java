@@ -1,13 +1,19 @@
 package com.redmoon2333.controller;
 
 import com.redmoon2333.annotation.RequireMinisterRole;
+import com.redmoon2333.config.AiHttpClientFactory;
 import com.redmoon2333.dto.ApiResponse;
+import com.redmoon2333.service.AiResilienceService;
+import com.redmoon2333.service.LoginProtectionService;
 import com.redmoon2333.service.PerformanceMonitorService;
+import com.redmoon2333.service.TokenStateCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 /**
  * 性能监控控制器
  * 提供性能指标查看接口
@@ -20,6 +26,18 @@ public class PerformanceController {
     
     @Autowired
     private PerformanceMonitorService performanceMonitorService;
+
+    @Autowired
+    private AiHttpClientFactory aiHttpClientFactory;
+
+    @Autowired
+    private AiResilienceService aiResilienceService;
+
+    @Autowired
+    private TokenStateCache tokenStateCache;
+
+    @Autowired
+    private LoginProtectionService loginProtectionService;
     
     /**
      * 获取性能报告
@@ -55,4 +73,64 @@ public class PerformanceController {
             return ApiResponse.error("重置失败: " + e.getMessage(), 500);
         }
     }
+
+    /**
+     * 获取AI上游连接池状态
+     * 需要部长权限
+     */
+    @GetMapping("/ai-pool")
+    @RequireMinisterRole("查看AI连接池状态")
+    public ApiResponse<List<AiHttpClientFactory.PoolStats>> getAiPoolStats() {
+        try {
+            return ApiResponse.success(aiHttpClientFactory.getPoolStats());
+        } catch (Exception e) {
+            logger.error("获取AI连接池状态失败", e);
+            return ApiResponse.error("获取AI连接池状态失败: " + e.getMessage(), 500);
+        }
+    }
+
+    /**
+     * 获取各模型熔断状态与重试/降级次数
+     * 需要部长权限
+     */
+    @GetMapping("/ai-resilience")
+    @RequireMinisterRole("查看AI熔断状态")
+    public ApiResponse<List<AiResilienceService.ModelResilienceStats>> getAiResilienceStats() {
+        try {
+            return ApiResponse.success(aiResilienceService.getStats());
+        } catch (Exception e) {
+            logger.error("获取AI熔断状态失败", e);
+            return ApiResponse.error("获取AI熔断状态失败: " + e.getMessage(), 500);
+        }
+    }
+
+    /**
+     * 获取令牌状态近缓存命中情况
+     * 需要部长权限
+     */
+    @GetMapping("/token-cache")
+    @RequireMinisterRole("查看令牌缓存状态")
+    public ApiResponse<TokenStateCache.NearCacheStats> getTokenCacheStats() {
+        try {
+            return ApiResponse.success(tokenStateCache.getStats());
+        } catch (Exception e) {
+            logger.error("获取令牌缓存状态失败", e);
+            return ApiResponse.error("获取令牌缓存状态失败: " + e.getMessage(), 500);
+        }
+    }
+
+    /**
+     * 获取登录防护状态（密码校验池、节流、哈希升级）
+     * 需要部长权限
+     */
+    @GetMapping("/login-protection")
+    @RequireMinisterRole("查看登录防护状态")
+    public ApiResponse<LoginProtectionService.LoginProtectionStats> getLoginProtectionStats() {
+        try {
+            return ApiResponse.success(loginProtectionService.getStats());
+        } catch (Exception e) {
+            logger.error("获取登录防护状态失败", e);
+            return ApiResponse.error("获取登录防护状态失败: " + e.getMessage(), 500);
+        }
+    }
 }
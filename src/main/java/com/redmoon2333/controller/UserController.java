@@ -4,14 +4,21 @@ import com.redmoon2333.annotation.RequireMinisterRole;
 import com.redmoon2333.dto.ActivationCodeResponse;
 import com.redmoon2333.dto.ActivationCodeListResponse;
 import com.redmoon2333.dto.ActivationCodeStatsResponse;
-import com.redmoon2333.dto.AlumniResponse;
 import com.redmoon2333.dto.ApiResponse;
 import com.redmoon2333.dto.PublicUserInfo;
 import com.redmoon2333.entity.User;
+import com.redmoon2333.service.AlumniDirectoryService;
+import com.redmoon2333.service.UserNameIndexService;
 import com.redmoon2333.service.UserService;
 import com.redmoon2333.exception.BusinessException;
+import com.redmoon2333.util.ClientIpUtil;
 import com.redmoon2333.util.RedisMemoryCleanupTask;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -39,6 +46,15 @@ public class UserController {
     @Autowired
     private UserService userService;
     
+    @Autowired
+    private AlumniDirectoryService alumniDirectoryService;
+    
+    @Autowired
+    private UserNameIndexService userNameIndexService;
+
+    @Autowired
+    private ClientIpUtil clientIpUtil;
+    
     @Autowired(required = false)
     private RedisMemoryCleanupTask redisMemoryCleanupTask;
 
@@ -46,22 +62,31 @@ public class UserController {
     /**
      * 获取往届部员信息
      * 按年份分组展示所有部员、部长和副部长
+     * 直接写出已序列化的快照，携带 ETag；客户端 If-None-Match 命中时返回 304
      * 
+     * @param ifNoneMatch 客户端缓存的 ETag
      * @return 按年份分组的部员信息列表
      */
     @GetMapping("/alumni")
-    public ApiResponse<List<AlumniResponse>> getAlumniMembers() {
+    public ResponseEntity<?> getAlumniMembers(
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
         try {
-            logger.info("收到获取往届部员信息的请求");
-            List<AlumniResponse> alumniMembers = userService.getAlumniMembers();
-            logger.info("成功获取往届部员信息，共 {} 个年份", alumniMembers.size());
-            return ApiResponse.success("查询成功", alumniMembers);
+            AlumniDirectoryService.Snapshot snapshot = alumniDirectoryService.getSnapshot();
+            String etag = "\"" + snapshot.etag() + "\"";
+            if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*"))) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+            return ResponseEntity.ok()
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(snapshot.body());
         } catch (BusinessException e) {
             logger.warn("获取往届部员信息失败: {}", e.getErrorCode().getMessage(), e);
-            return ApiResponse.error(e.getErrorCode().getMessage(), e.getErrorCode().getCode());
+            return ResponseEntity.ok(ApiResponse.error(e.getErrorCode().getMessage(), e.getErrorCode().getCode()));
         } catch (Exception e) {
             logger.error("获取往届部员信息时发生未预期的异常", e);
-            return ApiResponse.error("系统内部错误", 500);
+            return ResponseEntity.ok(ApiResponse.error("系统内部错误", 500));
         }
     }
     
@@ -69,12 +94,14 @@ public class UserController {
      * 根据姓名查找用户
      * 
      * @param name 姓名
+     * @param request HTTP请求，用于按客户端IP限流
      * @return 查找到的用户列表
      */
     @GetMapping("/search/name")
-    public ApiResponse<List<PublicUserInfo>> searchUsersByName(@RequestParam String name) {
+    public ApiResponse<List<PublicUserInfo>> searchUsersByName(@RequestParam String name, HttpServletRequest request) {
         try {
             logger.info("收到根据姓名查找用户的请求，姓名: {}", name);
+            userNameIndexService.checkRateLimit(clientIpUtil.getClientIp(request));
             List<PublicUserInfo> users = userService.searchUsersByName(name);
             logger.info("成功查找到 {} 个用户", users.size());
             return ApiResponse.success("查找成功", users);
@@ -91,12 +118,14 @@ public class UserController {
      * 根据姓名模糊查找用户
      * 
      * @param name 姓名关键词
+     * @param request HTTP请求，用于按客户端IP限流
      * @return 查找到的用户列表
      */
     @GetMapping("/search/name/like")
-    public ApiResponse<List<PublicUserInfo>> searchUsersByNameLike(@RequestParam String name) {
+    public ApiResponse<List<PublicUserInfo>> searchUsersByNameLike(@RequestParam String name, HttpServletRequest request) {
         try {
             logger.info("收到根据姓名模糊查找用户的请求，关键词: {}", name);
+            userNameIndexService.checkRateLimit(clientIpUtil.getClientIp(request));
             List<PublicUserInfo> users = userService.searchUsersByNameLike(name);
             logger.info("成功查找到 {} 个用户", users.size());
             return ApiResponse.success("查找成功", users);
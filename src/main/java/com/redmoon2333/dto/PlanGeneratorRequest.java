@@ -13,6 +13,7 @@ public class PlanGeneratorRequest {
     private String purpose;         // 活动目的
     private Integer leaderCount;    // 部长/副部长数量
     private Integer memberCount;    // 部员数量
+    private Boolean forceRegenerate; // 是否跳过缓存强制重新生成
     
     public PlanGeneratorRequest() {}
     
@@ -87,4 +88,12 @@ public class PlanGeneratorRequest {
     public void setMemberCount(Integer memberCount) {
         this.memberCount = memberCount;
     }
+    
+    public Boolean getForceRegenerate() {
+        return forceRegenerate;
+    }
+    
+    public void setForceRegenerate(Boolean forceRegenerate) {
+        this.forceRegenerate = forceRegenerate;
+    }
 }
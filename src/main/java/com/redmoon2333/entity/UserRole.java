@@ -0,0 +1,36 @@
+package com.redmoon2333.entity;
+
+import com.baomidou.mybatisplus.annotation.FieldStrategy;
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+/**
+ * 用户身份（user.role_history 的规范化副本，每条身份一行）
+ */
+@Data
+@TableName("user_role")
+public class UserRole {
+    public static final int LEVEL_OTHER = 0;
+    public static final int LEVEL_MEMBER = 1;
+    public static final int LEVEL_DEPUTY_MINISTER = 2;
+    public static final int LEVEL_MINISTER = 3;
+    public static final int LEVEL_ADMIN = 4;
+
+    @TableId(type = IdType.AUTO)
+    private Long id;
+    private Integer userId;
+    private Integer cohortYear;
+    private String department;
+    private Integer roleLevel;
+    private String roleName;
+    @TableField("is_latest")
+    private Boolean latest;
+    /**
+     * 现任部长的届别（数据库生成列，带唯一索引），不参与写入
+     */
+    @TableField(value = "minister_year", insertStrategy = FieldStrategy.NEVER, updateStrategy = FieldStrategy.NEVER)
+    private Integer ministerYear;
+}
@@ -7,6 +7,9 @@ public enum ErrorCode {
     INVALID_CREDENTIALS(1003, "用户名或密码错误"),
     INVALID_ACTIVATION_CODE(1004, "激活码无效或已过期"),
     PASSWORD_MISMATCH(1005, "两次输入的密码不一致"),
+    LOGIN_TOO_MANY_ATTEMPTS(1006, "登录失败次数过多，请稍后再试"),
+    LOGIN_BUSY(1007, "登录人数过多，请稍后重试"),
+    SEARCH_RATE_LIMITED(1008, "查询过于频繁，请稍后再试"),
     
     // Token相关错误 2000-2999
     INVALID_TOKEN(2001, "令牌无效或已过期"),
@@ -62,6 +65,7 @@ public enum ErrorCode {
     
     // 系统错误 5000-5999
     SYSTEM_ERROR(5000, "系统内部错误"),
+    AI_SERVICE_UNAVAILABLE(5001, "AI服务暂时不可用，请稍后重试"),
 
     // 任务相关错误 9001-9099
     TASK_NOT_FOUND(9001, "任务不存在"),
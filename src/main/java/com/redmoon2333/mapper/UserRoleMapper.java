@@ -0,0 +1,9 @@
+package com.redmoon2333.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.redmoon2333.entity.UserRole;
+import org.apache.ibatis.annotations.Mapper;
+
+@Mapper
+public interface UserRoleMapper extends BaseMapper<UserRole> {
+}
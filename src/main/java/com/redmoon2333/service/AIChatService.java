@@ -5,6 +5,8 @@ import com.redmoon2333.config.RedisChatMemory;
 import com.redmoon2333.dto.ChatResponse;
 import com.redmoon2333.dto.PlanGeneratorRequest;
 import com.redmoon2333.util.MarkdownFormatter;
+import com.redmoon2333.util.SingleFlight;
+import cn.hutool.crypto.SecureUtil;
 import jakarta.annotation.Resource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,20 +15,22 @@ import org.springframework.ai.chat.messages.AssistantMessage;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.prompt.Prompt;
-import org.springframework.ai.chat.prompt.PromptTemplate;
 import org.springframework.ai.rag.advisor.RetrievalAugmentationAdvisor;
 import org.springframework.ai.rag.retrieval.search.VectorStoreDocumentRetriever;
 import org.springframework.ai.tool.ToolCallback;
 import org.springframework.ai.support.ToolCallbacks;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.SignalType;
 
 import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * AI聊天服务（精简重构版）
@@ -37,6 +41,9 @@ import java.util.Map;
  * - 工具调用：使用 @Tool 注解，AI自动决定何时调用
  * - 对话记忆：手动管理（不使用 MessageChatMemoryAdvisor）
  * - 提示词管理：从配置文件加载，支持热更新
+ * - 请求合并：完整解析后相同的进行中请求共享同一次上游调用（SingleFlight）
+ * - 容错：重试、熔断、截止时间与模型降级统一由 AiResilienceService 处理，位于合并之内，
+ *         同一上游请求只重试一次而不是每个订阅者各自重试
  *
  * Why: Spring AI 1.0.0 的 MessageChatMemoryAdvisor 不实现 StreamAroundAdvisor，
  *      调用 .stream() 时会抛出 IllegalStateException: No StreamAdvisors available to execute
@@ -67,6 +74,33 @@ public class AIChatService {
     @Autowired
     private RedisChatMemory chatMemory;
 
+    @Autowired(required = false)
+    private RagManagementService ragManagementService;
+
+    @Autowired
+    private PlanCacheService planCacheService;
+
+    @Autowired
+    private AiResilienceService aiResilienceService;
+
+    @Autowired
+    private PerformanceMonitorService performanceMonitorService;
+
+    @Autowired
+    private IntentGateService intentGateService;
+
+    @Value("${spring.ai.openai.chat.options.model:ecnu-plus}")
+    private String chatModelName;
+
+    @Value("${spring.ai.openai.tool-model:ecnu-max}")
+    private String toolModelName;
+
+    // Why: 热门问题被同时提问时，上游只发一次请求，流式订阅者共享同一条token流
+    private final SingleFlight singleFlight = new SingleFlight("chat");
+
+    // 客户端中途断开时，追加在已输出部分之后写入记忆
+    private static final String INTERRUPTED_MARK = "\n\n（回答已中断）";
+
     /**
      * 普通对话（同步）
      *
@@ -81,13 +115,16 @@ public class AIChatService {
         String conversationId = "user_" + userId;
 
         List<Message> history = chatMemory.get(conversationId);
+        String systemPrompt = promptConfig.getSystemPrompt();
+        String requestKey = buildRequestKey(chatModelName, promptConfig.getSystemPromptId(), history, message, false, false);
 
-        String response = chatClient.prompt()
-                .system(promptConfig.getSystemPrompt())
-                .messages(history.toArray(new Message[0]))
-                .user(message)
-                .call()
-                .content();
+        String response = singleFlight.execute(requestKey, () -> aiResilienceService.call(chatModelName,
+                () -> chatClient.prompt()
+                        .system(systemPrompt)
+                        .messages(history.toArray(new Message[0]))
+                        .user(message)
+                        .call()
+                        .content()));
 
         response = MarkdownFormatter.format(response);
 
@@ -103,8 +140,8 @@ public class AIChatService {
     /**
      * 普通对话（流式）
      *
-     * Why: 手动管理对话记忆，流式完成后保存完整对话到 RedisChatMemory
-     *      使用 StringBuilder 收集完整响应，在 doOnComplete 中保存
+     * Why: 手动管理对话记忆，流结束时按结束方式写入 RedisChatMemory（见 saveStreamMemory）
+     *      客户端断开时订阅被取消，取消沿 SingleFlight 传到上游，中止 ChatECNU 的 HTTP 流
      */
     public Flux<String> chatStream(Integer userId, String message) {
         logger.info("用户 {} 发送流式消息", userId);
@@ -112,35 +149,27 @@ public class AIChatService {
         String conversationId = "user_" + userId;
 
         List<Message> history = chatMemory.get(conversationId);
-
-        StringBuilder fullResponse = new StringBuilder();
-
-        return chatClient.prompt()
-                .system(promptConfig.getSystemPrompt())
-                .messages(history.toArray(new Message[0]))
-                .user(message)
-                .stream()
-                .content()
+        String systemPrompt = promptConfig.getSystemPrompt();
+        String requestKey = buildRequestKey(chatModelName, promptConfig.getSystemPromptId(), history, message, false, false);
+
+        // Why: 取消信号可能与上游线程的 append 并发，使用线程安全的 StringBuffer
+        StringBuffer fullResponse = new StringBuffer();
+
+        return singleFlight.executeStream(requestKey, () -> trackCancellation(aiResilienceService.stream(chatModelName,
+                        () -> chatClient.prompt()
+                                .system(systemPrompt)
+                                .messages(history.toArray(new Message[0]))
+                                .user(message)
+                                .stream()
+                                .content())))
                 .limitRate(100)
                 .map(chunk -> {
                     fullResponse.append(chunk);
                     return chunk;
                 })
-                .doOnComplete(() -> {
-                    chatMemory.add(conversationId, List.of(
-                            new UserMessage(message),
-                            new AssistantMessage(fullResponse.toString())
-                    ));
-                    logger.debug("流式对话记忆已保存，用户ID: {}", userId);
-                })
+                .doFinally(signal -> saveStreamMemory(conversationId, userId, message, fullResponse, signal))
                 .doOnError(e -> logger.error("流式对话错误，用户ID: {}", userId, e))
-                .onErrorResume(e -> isClientDisconnect(e) ? Flux.empty() : Flux.error(e))
-                .retryWhen(reactor.util.retry.Retry.backoff(3, Duration.ofSeconds(1))
-                        .filter(this::isRetryableError)
-                        .doBeforeRetry(retrySignal -> {
-                            fullResponse.setLength(0);
-                            logger.warn("流式对话失败，用户ID: {}，正在进行第 {} 次重试", userId, retrySignal.totalRetries() + 1);
-                        }));
+                .onErrorResume(e -> isClientDisconnect(e) ? Flux.empty() : Flux.error(e));
     }
 
     /**
@@ -149,49 +178,42 @@ public class AIChatService {
      * Why: 合并原有的多个重载方法，通过参数控制功能开关，减少代码重复
      */
     public Flux<String> chatWithRag(Integer userId, String message, boolean useRAG, boolean enableTools) {
-        logger.info("用户 {} 发送消息, RAG: {}, Tools: {}", userId, message, useRAG, enableTools);
+        logger.info("用户 {} 发送消息, RAG: {}, Tools: {}", userId, useRAG, enableTools);
+
+        // Why: 寒暄类消息不需要检索和工具，由本地意图闸门关闭，省去向量化、KNN与工具定义
+        IntentGateService.Decision decision = intentGateService.evaluate(message, useRAG, enableTools);
 
-        if (enableTools && toolService != null) {
+        if (decision.useTools() && toolService != null) {
             return handleToolCalling(message, userId);
         }
 
         String conversationId = "user_" + userId;
 
         List<Message> history = chatMemory.get(conversationId);
-
-        StringBuilder fullResponse = new StringBuilder();
-
-        var promptSpec = chatClient.prompt()
-                .system(promptConfig.getSystemPrompt())
-                .messages(history.toArray(new Message[0]))
-                .user(message);
-
-        if (useRAG && vectorStore != null) {
-            promptSpec = promptSpec.advisors(buildRagAdvisor());
-        }
-
-        return promptSpec.stream()
-                .content()
+        String systemPrompt = promptConfig.getSystemPrompt();
+        boolean ragEnabled = decision.useRetrieval() && vectorStore != null;
+        String requestKey = buildRequestKey(chatModelName, promptConfig.getSystemPromptId(), history, message, false, ragEnabled);
+
+        StringBuffer fullResponse = new StringBuffer();
+
+        return singleFlight.executeStream(requestKey, () -> trackCancellation(aiResilienceService.stream(chatModelName, () -> {
+                    var promptSpec = chatClient.prompt()
+                            .system(systemPrompt)
+                            .messages(history.toArray(new Message[0]))
+                            .user(message);
+                    if (ragEnabled) {
+                        promptSpec = promptSpec.advisors(buildRagAdvisor());
+                    }
+                    return promptSpec.stream().content();
+                })))
                 .limitRate(100)
                 .map(chunk -> {
                     fullResponse.append(chunk);
                     return chunk;
                 })
-                .doOnComplete(() -> {
-                    chatMemory.add(conversationId, List.of(
-                            new UserMessage(message),
-                            new AssistantMessage(fullResponse.toString())
-                    ));
-                    logger.debug("RAG对话记忆已保存，用户ID: {}", userId);
-                })
+                .doFinally(signal -> saveStreamMemory(conversationId, userId, message, fullResponse, signal))
                 .doOnError(e -> logger.error("RAG对话错误，用户ID: {}", userId, e))
-                .onErrorResume(e -> isClientDisconnect(e) ? Flux.empty() : Flux.error(e))
-                .retryWhen(reactor.util.retry.Retry.backoff(3, Duration.ofSeconds(1))
-                        .filter(this::isRetryableError)
-                        .doBeforeRetry(retrySignal -> {
-                            fullResponse.setLength(0);
-                            logger.warn("RAG对话失败，用户ID: {}，正在进行第 {} 次重试", userId, retrySignal.totalRetries() + 1);
-                        }));
+                .onErrorResume(e -> isClientDisconnect(e) ? Flux.empty() : Flux.error(e));
     }
 
     /**
@@ -203,74 +225,170 @@ public class AIChatService {
 
     /**
      * 生成活动策划案（同步）
+     *
+     * Why: 相同参数的策划案结果直接走缓存，forceRegenerate=true 时跳过缓存重新生成
      */
     public String generatePlan(PlanGeneratorRequest request) {
         logger.info("生成策划案，主题: {}", request.getTheme());
-        String response = planGeneratorChatClient.prompt(buildPlanPrompt(request)).call().content();
+        String cacheKey = planCacheService.buildKey(request, chatModelName, promptConfig.getPlanGeneratorPromptVersion());
+        boolean forceRegenerate = Boolean.TRUE.equals(request.getForceRegenerate());
+        if (!forceRegenerate) {
+            PlanCacheService.CachedPlan cached = planCacheService.get(cacheKey);
+            if (cached != null) {
+                logger.info("策划案缓存命中，主题: {}", request.getTheme());
+                return MarkdownFormatter.format(cached.content());
+            }
+        }
+
+        long startTime = System.currentTimeMillis();
+        Prompt prompt = buildPlanPrompt(request);
+        String response = singleFlight.execute(planFlightKey(cacheKey, forceRegenerate), () -> aiResilienceService.call(chatModelName,
+                () -> planGeneratorChatClient.prompt(prompt).call().content()));
+        planCacheService.put(cacheKey, response, System.currentTimeMillis() - startTime);
         return MarkdownFormatter.format(response);
     }
 
     /**
      * 生成活动策划案（流式）
+     *
+     * Why: 缓存命中时按行重放完整结果；未命中时在流完成后写入缓存
      */
     public Flux<String> generatePlanStream(PlanGeneratorRequest request) {
         logger.info("流式生成策划案，主题: {}", request.getTheme());
 
-        return planGeneratorChatClient.prompt(buildPlanPrompt(request))
-                .stream()
-                .content()
+        String cacheKey = planCacheService.buildKey(request, chatModelName, promptConfig.getPlanGeneratorPromptVersion());
+        boolean forceRegenerate = Boolean.TRUE.equals(request.getForceRegenerate());
+        if (!forceRegenerate) {
+            PlanCacheService.CachedPlan cached = planCacheService.get(cacheKey);
+            if (cached != null) {
+                logger.info("策划案缓存命中，主题: {}", request.getTheme());
+                return replayStream(cached.content());
+            }
+        }
+
+        Prompt prompt = buildPlanPrompt(request);
+
+        StringBuilder fullResponse = new StringBuilder();
+        long startTime = System.currentTimeMillis();
+
+        // Why: 客户端断开时不写缓存（只在完整完成时写入），避免缓存半截策划案
+        return singleFlight.executeStream(planFlightKey(cacheKey, forceRegenerate), () -> trackCancellation(aiResilienceService.stream(chatModelName,
+                        () -> planGeneratorChatClient.prompt(prompt)
+                                .stream()
+                                .content())))
                 .limitRate(100)
-                .map(chunk -> chunk)
+                .map(chunk -> {
+                    fullResponse.append(chunk);
+                    return chunk;
+                })
+                .doOnComplete(() -> planCacheService.put(cacheKey, fullResponse.toString(),
+                        System.currentTimeMillis() - startTime))
                 .doOnError(e -> logger.error("策划案生成错误", e))
-                .onErrorResume(e -> isClientDisconnect(e) ? Flux.empty() : Flux.error(e))
-                .retryWhen(reactor.util.retry.Retry.backoff(3, Duration.ofSeconds(1))
-                        .filter(this::isRetryableError)
-                        .doBeforeRetry(retrySignal ->
-                            logger.warn("策划案生成失败，正在进行第 {} 次重试", retrySignal.totalRetries() + 1)));
-    }
-
-    private boolean isRetryableError(Throwable error) {
-        if (error == null || error.getMessage() == null) return false;
-        String msg = error.getMessage().toLowerCase();
-        return msg.contains("connection reset")
-                || msg.contains("connection refused")
-                || msg.contains("timeout")
-                || msg.contains("broken pipe")
-                || msg.contains("unexpected end of stream")
-                || msg.contains("ssl")
-                || msg.contains("premature close")
-                || msg.contains("prematurecloseexception");
+                .onErrorResume(e -> isClientDisconnect(e) ? Flux.empty() : Flux.error(e));
     }
 
     // ==================== 私有辅助方法 ====================
 
+    /**
+     * 策划案请求合并key
+     * Why: 缓存key已覆盖规范化参数、模型与模板版本；强制重新生成单独合并，
+     *      否则会搭上进行中的普通请求，拿到本想绕过的结果
+     */
+    private static String planFlightKey(String cacheKey, boolean forceRegenerate) {
+        return forceRegenerate ? cacheKey + ":force" : cacheKey;
+    }
+
+    /**
+     * 工具调用（流式）
+     *
+     * Why: 之前同步调用 ecnu-max 并在算完整段回答后再模拟分行输出，客户端断开后仍会把回答算完；
+     *      改为流式调用后，取消订阅即可中止上游请求
+     *
+     * 片段原样下发，与普通流式对话一致（MarkdownFormatter.format 对内容透传，无需逐行处理）
+     */
     private Flux<String> handleToolCalling(String message, Integer userId) {
         return Flux.defer(() -> {
-            try {
-                if (!isToolSupported()) {
-                    String errorMsg = "当前ChatECNU模型不支持工具调用功能";
-                    logger.warn(errorMsg);
-                    return simulateStream(errorMsg);
-                }
-
-                ToolCallback[] tools = ToolCallbacks.from(toolService);
-                logger.info("调用工具，共 {} 个", tools.length);
-
-                String response = toolChatClient.prompt()
-                        .system(promptConfig.getSystemPromptWithTools())
-                        .user(message)
-                        .toolCallbacks(tools)
-                        .call()
-                        .content();
+            if (!isToolSupported()) {
+                String errorMsg = "当前ChatECNU模型不支持工具调用功能";
+                logger.warn(errorMsg);
+                return simulateStream(errorMsg);
+            }
 
-                response = MarkdownFormatter.format(response != null ? response : "");
+            ToolCallback[] tools = ToolCallbacks.from(toolService);
+            logger.info("调用工具，共 {} 个", tools.length);
+
+            String systemPrompt = promptConfig.getSystemPromptWithTools();
+            String requestKey = buildRequestKey(toolModelName, promptConfig.getSystemPromptWithToolsId(), List.of(), message, true, false);
+
+            // Why: ecnu-max 熔断或重试耗尽时降级到 ecnu-plus 直接回答（不带工具），保证可用性
+            return singleFlight.executeStream(requestKey, () -> trackCancellation(aiResilienceService.stream(
+                    toolModelName,
+                    () -> toolChatClient.prompt()
+                            .system(systemPrompt)
+                            .user(message)
+                            .toolCallbacks(tools)
+                            .stream()
+                            .content(),
+                    chatModelName,
+                    () -> chatClient.prompt()
+                            .system(promptConfig.getSystemPrompt())
+                            .user(message)
+                            .stream()
+                            .content())));
+        }).doOnError(e -> logger.error("工具调用失败，用户ID: {}", userId, e));
+    }
 
-                return simulateStream(response);
-            } catch (Exception e) {
-                logger.error("工具调用失败", e);
-                return Flux.error(e);
-            }
-        }).subscribeOn(reactor.core.scheduler.Schedulers.boundedElastic());
+    /**
+     * 统计上游流的完成与取消
+     * Why: 放在 SingleFlight 的上游一侧，只有所有订阅者都离开、上游真正被取消时才计数
+     */
+    private Flux<String> trackCancellation(Flux<String> upstream) {
+        return Flux.defer(() -> {
+            AtomicLong emitted = new AtomicLong(0);
+            return upstream
+                    .doOnNext(chunk -> emitted.incrementAndGet())
+                    .doFinally(signal -> {
+                        if (signal == SignalType.CANCEL) {
+                            performanceMonitorService.recordStreamCancelled(emitted.get());
+                        } else if (signal == SignalType.ON_COMPLETE) {
+                            performanceMonitorService.recordStreamCompleted(emitted.get());
+                        }
+                    });
+        });
+    }
+
+    /**
+     * 流结束时写入对话记忆
+     * Why: 正常完成保存完整回答；客户端中途断开时保存已输出部分并标注中断，使记忆与用户实际看到的内容一致；
+     *      出错或尚未输出任何内容时不写入，避免记忆里留下没有回答的用户消息
+     */
+    private void saveStreamMemory(String conversationId, Integer userId, String message,
+                                  CharSequence fullResponse, SignalType signal) {
+        String answer = fullResponse.toString();
+        if (signal == SignalType.ON_COMPLETE) {
+            chatMemory.add(conversationId, List.of(new UserMessage(message), new AssistantMessage(answer)));
+            logger.debug("流式对话记忆已保存，用户ID: {}", userId);
+        } else if (signal == SignalType.CANCEL && !answer.isEmpty()) {
+            chatMemory.add(conversationId, List.of(new UserMessage(message), new AssistantMessage(answer + INTERRUPTED_MARK)));
+            logger.debug("流式对话被取消，已保存部分回答，用户ID: {}", userId);
+        }
+    }
+
+    /**
+     * 构建请求合并key
+     * Why: key 必须覆盖所有影响上游输出的因素（模型、系统提示词、历史消息、用户消息、工具开关、知识库版本），
+     *      否则不同请求会错误地共享同一个回答；系统提示词用 PromptConfig 预先算好的ID代替全文
+     */
+    private String buildRequestKey(String model, String systemPromptId, List<Message> history,
+                                   String userMessage, boolean enableTools, boolean useRAG) {
+        StringBuilder key = new StringBuilder();
+        key.append(model).append('\u0000').append(systemPromptId).append('\u0000');
+        for (Message msg : history) {
+            key.append(msg.getMessageType()).append(':').append(msg.getText()).append('\u0000');
+        }
+        key.append(userMessage).append('\u0000').append(enableTools).append('\u0000');
+        key.append(useRAG && ragManagementService != null ? ragManagementService.getGeneration() : -1);
+        return SecureUtil.sha256(key.toString());
     }
 
     private RetrievalAugmentationAdvisor buildRagAdvisor() {
@@ -282,9 +400,10 @@ public class AIChatService {
                 .build();
     }
 
+    /**
+     * Why: 模板在 PromptConfig 加载时已预编译，这里只替换变量槽位，不再每次解析整段模板
+     */
     private Prompt buildPlanPrompt(PlanGeneratorRequest request) {
-        String planTemplate = promptConfig.getPlanGeneratorPrompt();
-        PromptTemplate template = new PromptTemplate(planTemplate);
         Map<String, Object> params = new HashMap<>();
         params.put("theme", request.getTheme());
         params.put("organizer", request.getOrganizer());
@@ -295,7 +414,7 @@ public class AIChatService {
         params.put("purpose", request.getPurpose());
         params.put("leaderCount", request.getLeaderCount());
         params.put("memberCount", request.getMemberCount());
-        return template.create(params);
+        return new Prompt(promptConfig.renderPlanGeneratorPrompt(params));
     }
 
     private Flux<String> simulateStream(String text) {
@@ -307,6 +426,17 @@ public class AIChatService {
                 .delayElements(Duration.ofMillis(50));
     }
 
+    /**
+     * 按行重放缓存内容
+     * Why: 与真实流式输出保持相同的分块形态，前端无需区分是否命中缓存
+     */
+    private Flux<String> replayStream(String text) {
+        if (text == null || text.isEmpty()) {
+            return Flux.empty();
+        }
+        return Flux.fromArray(text.split("(?<=\n)"));
+    }
+
     private boolean isClientDisconnect(Throwable error) {
         if (error == null || error.getMessage() == null) return false;
         String msg = error.getMessage();
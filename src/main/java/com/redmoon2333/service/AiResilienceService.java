@@ -0,0 +1,312 @@
+package com.redmoon2333.service;
+
+import com.redmoon2333.exception.BusinessException;
+import com.redmoon2333.exception.ErrorCode;
+import com.redmoon2333.util.AiErrorClassifier;
+import com.redmoon2333.util.ModelCircuitBreaker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * AI上游调用容错服务
+ *
+ * 架构说明：
+ * - 错误分类：AiErrorClassifier 按异常类型区分 超时/429/5xx/连接异常 与 4xx
+ * - 熔断：每个模型一个 ModelCircuitBreaker，打开时直接失败，不再排队等待上游
+ * - 截止时间：同步调用的每次尝试（含降级）都以剩余时间为超时，到期即失败，不再发起降级；
+ *   流式调用约束首个片段之前的总耗时，之后相邻片段的间隔受 stream-idle-timeout 约束
+ * - 重试：只重试可重试错误，且受每个请求的总截止时间约束
+ * - 降级：调用方可提供备用模型（如 ecnu-max → ecnu-plus），主模型熔断或重试耗尽时切换
+ *
+ * Why: 之前每个请求固定 Retry.backoff(3)，上游降级时每个用户都要等三轮退避才失败，
+ *      重试流量恰好在上游最吃力的时候成倍放大
+ *
+ * Warning: 流式调用一旦已向下游输出内容就不再重试，否则用户会看到重复片段；
+ *          同步调用的退避在调用线程上等待（调用方本身就阻塞等待结果），
+ *          因此单个请求的累计退避受 sync-max-total-backoff 严格限制，超出后直接失败或降级，不占住请求线程空等；
+ *          同步尝试在 boundedElastic 线程上执行，到期时调用方立即返回并中断该线程，
+ *          上游客户端不响应中断时该线程仍会占用到连接层 responseTimeout
+ */
+@Service
+public class AiResilienceService {
+    private static final Logger logger = LoggerFactory.getLogger(AiResilienceService.class);
+
+    @Value("${ai.resilience.max-retries:2}")
+    private int maxRetries;
+
+    @Value("${ai.resilience.initial-backoff:500ms}")
+    private Duration initialBackoff;
+
+    @Value("${ai.resilience.max-backoff:4s}")
+    private Duration maxBackoff;
+
+    @Value("${ai.resilience.deadline:90s}")
+    private Duration deadline;
+
+    @Value("${ai.resilience.sync-max-total-backoff:1s}")
+    private Duration syncMaxTotalBackoff;
+
+    // 流式调用开始输出后，相邻两个片段之间的最长间隔
+    @Value("${ai.resilience.stream-idle-timeout:60s}")
+    private Duration streamIdleTimeout;
+
+    @Value("${ai.resilience.circuit-breaker.failure-threshold:5}")
+    private int failureThreshold;
+
+    @Value("${ai.resilience.circuit-breaker.open-duration:30s}")
+    private Duration openDuration;
+
+    @Value("${ai.resilience.fallback.enabled:true}")
+    private boolean fallbackEnabled;
+
+    // key: 模型名
+    private final ConcurrentHashMap<String, ModelCircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicLong> retryCounts = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicLong> fallbackCounts = new ConcurrentHashMap<>();
+
+    /**
+     * 同步调用（熔断 + 重试 + 总截止时间）
+     * 每次尝试以剩余时间为超时；重试退避在当前线程等待，累计不超过 sync-max-total-backoff
+     *
+     * @param model 模型名，用于选择熔断器
+     * @param call 实际上游调用
+     * @return 上游结果
+     */
+    public <T> T call(String model, Supplier<T> call) {
+        return call(model, call, null, null);
+    }
+
+    /**
+     * 同步调用，主模型失败时降级到备用模型
+     *
+     * @param model 主模型
+     * @param call 主模型调用
+     * @param fallbackModel 备用模型，为null时不降级
+     * @param fallback 备用模型调用
+     * @return 上游结果
+     */
+    public <T> T call(String model, Supplier<T> call, String fallbackModel, Supplier<T> fallback) {
+        long deadlineAt = System.currentTimeMillis() + deadline.toMillis();
+        try {
+            return callWithRetry(model, call, deadlineAt);
+        } catch (RuntimeException e) {
+            AiErrorClassifier.ErrorType type = AiErrorClassifier.classify(e);
+            if (!canFallback(model, fallbackModel, fallback != null, type) || !hasBudget(deadlineAt, 0)) {
+                throw e;
+            }
+            counter(fallbackCounts, model).incrementAndGet();
+            logger.warn("模型 {} 调用失败（{}），降级到 {}", model, type, fallbackModel);
+            return callWithRetry(fallbackModel, fallback, deadlineAt);
+        }
+    }
+
+    /**
+     * 流式调用（熔断 + 重试 + 总截止时间）
+     * Why: 截止时间约束的是"拿到首个片段"之前的总耗时（含所有重试）；
+     *      开始输出后，相邻片段间隔超过 stream-idle-timeout 即以超时结束，中途卡住的流不会一直挂着
+     *
+     * @param model 模型名，用于选择熔断器
+     * @param upstream 上游流工厂，每次重试重新调用
+     * @return 带容错的流
+     */
+    public <T> Flux<T> stream(String model, Supplier<Flux<T>> upstream) {
+        return Flux.defer(() -> {
+            ModelCircuitBreaker breaker = breakerFor(model);
+            long deadlineAt = System.currentTimeMillis() + deadline.toMillis();
+            AtomicBoolean emitted = new AtomicBoolean(false);
+
+            Flux<T> attempt = Flux.defer(() -> {
+                if (!breaker.tryAcquire()) {
+                    return Flux.error(circuitOpen(model));
+                }
+                return upstream.get()
+                        .doOnNext(item -> emitted.set(true))
+                        .doOnComplete(breaker::onSuccess)
+                        .doOnError(e -> breaker.onError(AiErrorClassifier.classify(e)))
+                        .doFinally(signal -> {
+                            if (signal == SignalType.CANCEL) {
+                                breaker.onCancel();
+                            }
+                        });
+            });
+
+            return attempt
+                    .retryWhen(Retry.backoff(maxRetries, initialBackoff)
+                            .maxBackoff(maxBackoff)
+                            .filter(e -> !emitted.get()
+                                    && AiErrorClassifier.isRetryable(e)
+                                    && hasBudget(deadlineAt, initialBackoff.toMillis()))
+                            .doBeforeRetry(signal -> {
+                                counter(retryCounts, model).incrementAndGet();
+                                logger.warn("模型 {} 流式调用失败（{}），第 {} 次重试", model,
+                                        AiErrorClassifier.classify(signal.failure()), signal.totalRetries() + 1);
+                            })
+                            .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+                    .timeout(Mono.delay(deadline), item -> Mono.delay(streamIdleTimeout));
+        });
+    }
+
+    /**
+     * 流式调用，主模型在输出任何内容之前失败时降级到备用模型
+     *
+     * @param model 主模型
+     * @param upstream 主模型上游流工厂
+     * @param fallbackModel 备用模型，为null时不降级
+     * @param fallback 备用模型上游流工厂
+     * @return 带容错的流
+     */
+    public <T> Flux<T> stream(String model, Supplier<Flux<T>> upstream,
+                              String fallbackModel, Supplier<Flux<T>> fallback) {
+        return Flux.defer(() -> {
+            AtomicBoolean emitted = new AtomicBoolean(false);
+            return stream(model, upstream)
+                    .doOnNext(item -> emitted.set(true))
+                    .onErrorResume(e -> {
+                        AiErrorClassifier.ErrorType type = AiErrorClassifier.classify(e);
+                        if (emitted.get() || !canFallback(model, fallbackModel, fallback != null, type)) {
+                            return Flux.error(e);
+                        }
+                        counter(fallbackCounts, model).incrementAndGet();
+                        logger.warn("模型 {} 流式调用失败（{}），降级到 {}", model, type, fallbackModel);
+                        return stream(fallbackModel, fallback);
+                    });
+        });
+    }
+
+    private boolean canFallback(String model, String fallbackModel, boolean hasFallback,
+                                AiErrorClassifier.ErrorType type) {
+        return fallbackEnabled && hasFallback && fallbackModel != null
+                && !fallbackModel.equals(model) && type.isFallbackEligible();
+    }
+
+    private <T> T callWithRetry(String model, Supplier<T> call, long deadlineAt) {
+        ModelCircuitBreaker breaker = breakerFor(model);
+        int attempt = 0;
+        long totalBackoff = 0;
+        while (true) {
+            if (!breaker.tryAcquire()) {
+                throw circuitOpen(model);
+            }
+            try {
+                T result = attemptWithinDeadline(model, call, deadlineAt);
+                breaker.onSuccess();
+                return result;
+            } catch (RuntimeException e) {
+                AiErrorClassifier.ErrorType type = AiErrorClassifier.classify(e);
+                breaker.onError(type);
+                long backoff = backoffMillis(attempt);
+                if (!type.isRetryable() || attempt >= maxRetries || !hasBudget(deadlineAt, backoff)
+                        || totalBackoff + backoff > syncMaxTotalBackoff.toMillis()) {
+                    throw e;
+                }
+                attempt++;
+                totalBackoff += backoff;
+                counter(retryCounts, model).incrementAndGet();
+                logger.warn("模型 {} 调用失败（{}），{}ms 后第 {} 次重试", model, type, backoff, attempt);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * 以剩余时间为超时执行一次同步尝试
+     *
+     * @throws IllegalStateException 截止时间已到，cause 为 TimeoutException（按超时分类计入熔断）
+     */
+    private <T> T attemptWithinDeadline(String model, Supplier<T> call, long deadlineAt) {
+        long remaining = deadlineAt - System.currentTimeMillis();
+        if (remaining <= 0) {
+            throw deadlineExceeded(model);
+        }
+        try {
+            return Mono.fromSupplier(call)
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .timeout(Duration.ofMillis(remaining))
+                    .block();
+        } catch (RuntimeException e) {
+            if (Exceptions.unwrap(e) instanceof TimeoutException) {
+                throw deadlineExceeded(model);
+            }
+            throw e;
+        }
+    }
+
+    private IllegalStateException deadlineExceeded(String model) {
+        return new IllegalStateException("模型 " + model + " 调用超过总截止时间 " + deadline.toMillis() + "ms",
+                new TimeoutException());
+    }
+
+    /**
+     * 获取各模型熔断与重试统计（监控用）
+     */
+    public List<ModelResilienceStats> getStats() {
+        List<ModelResilienceStats> stats = new ArrayList<>();
+        breakers.forEach((model, breaker) -> stats.add(new ModelResilienceStats(
+                model,
+                breaker.getState().name(),
+                breaker.getConsecutiveFailures(),
+                breaker.getOpenCount(),
+                breaker.getRejectedCount(),
+                counter(retryCounts, model).get(),
+                counter(fallbackCounts, model).get()
+        )));
+        return stats;
+    }
+
+    private ModelCircuitBreaker breakerFor(String model) {
+        return breakers.computeIfAbsent(model, m -> new ModelCircuitBreaker(m, failureThreshold, openDuration));
+    }
+
+    private AtomicLong counter(ConcurrentHashMap<String, AtomicLong> counters, String model) {
+        return counters.computeIfAbsent(model, m -> new AtomicLong(0));
+    }
+
+    private long backoffMillis(int attempt) {
+        long backoff = initialBackoff.toMillis() << Math.min(attempt, 16);
+        return Math.min(backoff, maxBackoff.toMillis());
+    }
+
+    private boolean hasBudget(long deadlineAt, long backoffMs) {
+        return System.currentTimeMillis() + backoffMs < deadlineAt;
+    }
+
+    private BusinessException circuitOpen(String model) {
+        return new BusinessException(ErrorCode.AI_SERVICE_UNAVAILABLE, "模型 " + model + " 暂时不可用（熔断中），请稍后重试");
+    }
+
+    /**
+     * 单个模型的容错统计
+     * state: CLOSED/OPEN/HALF_OPEN；rejected: 熔断期间被快速拒绝的调用数
+     */
+    public record ModelResilienceStats(
+        String model,
+        String state,
+        int consecutiveFailures,
+        long openCount,
+        long rejected,
+        long retries,
+        long fallbacks
+    ) {}
+}
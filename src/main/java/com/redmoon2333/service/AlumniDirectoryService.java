@@ -0,0 +1,291 @@
+package com.redmoon2333.service;
+
+import cn.hutool.crypto.SecureUtil;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.redmoon2333.dto.AlumniMember;
+import com.redmoon2333.dto.AlumniResponse;
+import com.redmoon2333.dto.ApiResponse;
+import com.redmoon2333.entity.User;
+import com.redmoon2333.exception.BusinessException;
+import com.redmoon2333.exception.ErrorCode;
+import com.redmoon2333.mapper.UserMapper;
+import com.redmoon2333.util.RoleHistoryParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 往届部员名录（物化快照）
+ *
+ * 架构说明：
+ * - alumni:entries（Hash）：每个用户一项，值为该用户解析好的 [届别, 姓名, 身份] 列表
+ * - alumni:snapshot（Hash）：按届别分组、序列化好的完整响应体（version/etag/body）
+ * - 用户身份历史或资料变更（UserRoleService 发布 UserRolesSyncedEvent，事务提交后）时，
+ *   只重新解析该用户一项，再由各用户项重新分组生成快照，不再扫描 user 表
+ * - 读取时只比较 etag（一次 HGET），未变化直接返回本地已序列化的字节
+ *
+ * Why: /api/users/alumni 是公开接口，之前每次请求都 selectList(null) 全表加载并逐条正则解析身份历史，
+ *      AI 工具 getAlumniByYear、getDepartmentStats 也会触发同样的全表扫描
+ *
+ * Warning: 快照写入带版本号，并发重建时旧版本不会覆盖新版本；直接改库不会触发重建，需调用 rebuildAll；
+ *          全量重建期间其他实例上的单用户刷新可能被重建读到的旧数据覆盖，直到该用户下次变更
+ */
+@Service
+public class AlumniDirectoryService {
+    private static final Logger logger = LoggerFactory.getLogger(AlumniDirectoryService.class);
+
+    private static final String ENTRIES_KEY = "alumni:entries";
+    private static final String SNAPSHOT_KEY = "alumni:snapshot";
+    private static final String VERSION_KEY = "alumni:version";
+
+    // ETag 长度（sha256 前16位十六进制）
+    private static final int ETAG_LENGTH = 16;
+
+    /**
+     * 仅当版本更新时写入快照
+     * KEYS: 快照key
+     * ARGV: 版本, etag, 响应体
+     */
+    private static final DefaultRedisScript<Long> WRITE_SNAPSHOT_SCRIPT = new DefaultRedisScript<>(
+            "local current = tonumber(redis.call('HGET', KEYS[1], 'version') or '-1')\n" +
+            "if tonumber(ARGV[1]) > current then\n" +
+            "  redis.call('HSET', KEYS[1], 'version', ARGV[1], 'etag', ARGV[2], 'body', ARGV[3])\n" +
+            "  return 1\n" +
+            "end\n" +
+            "return 0",
+            Long.class);
+
+    /**
+     * 全量替换用户项并递增版本（脚本内原子执行，并发的单用户刷新不会读到清空了一半的用户项）
+     * KEYS: 用户项key, 版本key
+     * ARGV: userId1, 用户项1, userId2, 用户项2, ...
+     */
+    private static final DefaultRedisScript<Long> REPLACE_ENTRIES_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('DEL', KEYS[1])\n" +
+            "for i = 1, #ARGV, 2 do\n" +
+            "  redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1])\n" +
+            "end\n" +
+            "return redis.call('INCR', KEYS[2])",
+            Long.class);
+
+    private static final TypeReference<List<AlumniEntry>> ENTRY_LIST_TYPE = new TypeReference<>() {};
+    private static final TypeReference<List<AlumniResponse>> ALUMNI_LIST_TYPE = new TypeReference<>() {};
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private volatile Snapshot localSnapshot;
+
+    // 全量重建期间本实例刷新过的用户，替换完成后重新刷新，避免被重建时读到的旧数据覆盖
+    private final Set<Integer> refreshedDuringRebuild = ConcurrentHashMap.newKeySet();
+    private volatile boolean rebuilding;
+
+    /**
+     * 获取当前快照（响应体已序列化）
+     */
+    public Snapshot getSnapshot() {
+        try {
+            Snapshot local = localSnapshot;
+            Object etag = stringRedisTemplate.opsForHash().get(SNAPSHOT_KEY, "etag");
+            if (local != null && local.etag().equals(etag)) {
+                return local;
+            }
+            List<Object> fields = stringRedisTemplate.opsForHash().multiGet(SNAPSHOT_KEY, Arrays.asList("etag", "body"));
+            if (fields.get(0) == null || fields.get(1) == null) {
+                rebuildAll();
+                fields = stringRedisTemplate.opsForHash().multiGet(SNAPSHOT_KEY, Arrays.asList("etag", "body"));
+            }
+            String body = (String) fields.get(1);
+            Snapshot snapshot = new Snapshot((String) fields.get(0), body.getBytes(StandardCharsets.UTF_8),
+                    Collections.unmodifiableList(objectMapper.convertValue(objectMapper.readTree(body).get("data"),
+                            ALUMNI_LIST_TYPE)));
+            localSnapshot = snapshot;
+            return snapshot;
+        } catch (Exception e) {
+            // Redis 不可用时退回直接查库，保证公开接口可用
+            logger.warn("读取往届部员快照失败，改为直接查询: {}", e.getMessage());
+            return buildSnapshot(loadAllEntries());
+        }
+    }
+
+    /**
+     * 获取按年份分组的往届部员信息
+     */
+    public List<AlumniResponse> getAlumni() {
+        return getSnapshot().alumni();
+    }
+
+    /**
+     * 用户身份历史或资料变更后，只重新解析该用户并重建快照
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserRolesSynced(UserRoleService.UserRolesSyncedEvent event) {
+        try {
+            refreshUser(event.userId());
+        } catch (Exception e) {
+            logger.error("更新往届部员快照失败: userId={}", event.userId(), e);
+        }
+    }
+
+    /**
+     * 重新解析单个用户并重建快照
+     *
+     * @param userId 用户ID
+     */
+    public void refreshUser(Integer userId) throws JsonProcessingException {
+        if (rebuilding) {
+            refreshedDuringRebuild.add(userId);
+        }
+        User user = userMapper.selectById(userId);
+        List<AlumniEntry> entries = user != null ? toEntries(user) : List.of();
+        if (entries.isEmpty()) {
+            stringRedisTemplate.opsForHash().delete(ENTRIES_KEY, String.valueOf(userId));
+        } else {
+            stringRedisTemplate.opsForHash().put(ENTRIES_KEY, String.valueOf(userId),
+                    objectMapper.writeValueAsString(entries));
+        }
+        stringRedisTemplate.opsForValue().increment(VERSION_KEY);
+        rebuildSnapshot();
+    }
+
+    /**
+     * 按全部用户重建（快照不存在时自动调用）
+     * Why: 清空与写入用户项在一个脚本内完成；分两步时，夹在中间的单用户刷新会递增版本，
+     *      并发布只含该用户的快照，在重建完成前一直对外提供
+     */
+    public synchronized void rebuildAll() throws JsonProcessingException {
+        refreshedDuringRebuild.clear();
+        rebuilding = true;
+        Map<Integer, List<AlumniEntry>> entriesByUser;
+        try {
+            entriesByUser = loadAllEntries();
+            List<String> args = new ArrayList<>(entriesByUser.size() * 2);
+            for (Map.Entry<Integer, List<AlumniEntry>> entry : entriesByUser.entrySet()) {
+                args.add(String.valueOf(entry.getKey()));
+                args.add(objectMapper.writeValueAsString(entry.getValue()));
+            }
+            stringRedisTemplate.execute(REPLACE_ENTRIES_SCRIPT, Arrays.asList(ENTRIES_KEY, VERSION_KEY), args.toArray());
+        } finally {
+            rebuilding = false;
+        }
+        rebuildSnapshot();
+        for (Integer userId : refreshedDuringRebuild) {
+            refreshUser(userId);
+        }
+        refreshedDuringRebuild.clear();
+        logger.info("往届部员快照全量重建完成: {} 个用户", entriesByUser.size());
+    }
+
+    /**
+     * 由各用户项重新分组生成快照（不访问数据库）
+     * Why: 先读版本再读用户项，快照内容至少与该版本一样新，写入时按版本比较防止旧快照覆盖新快照
+     */
+    private void rebuildSnapshot() throws JsonProcessingException {
+        String version = stringRedisTemplate.opsForValue().get(VERSION_KEY);
+        Map<Object, Object> raw = stringRedisTemplate.opsForHash().entries(ENTRIES_KEY);
+        Map<Integer, List<AlumniEntry>> entriesByUser = new TreeMap<>();
+        for (Map.Entry<Object, Object> entry : raw.entrySet()) {
+            entriesByUser.put(Integer.valueOf((String) entry.getKey()),
+                    objectMapper.readValue((String) entry.getValue(), ENTRY_LIST_TYPE));
+        }
+        Snapshot snapshot = buildSnapshot(entriesByUser);
+        stringRedisTemplate.execute(WRITE_SNAPSHOT_SCRIPT, Collections.singletonList(SNAPSHOT_KEY),
+                version != null ? version : "0", snapshot.etag(), new String(snapshot.body(), StandardCharsets.UTF_8));
+    }
+
+    private Map<Integer, List<AlumniEntry>> loadAllEntries() {
+        List<User> users = userMapper.selectList(new LambdaQueryWrapper<User>()
+                .select(User::getUserId, User::getName, User::getRoleHistory)
+                .isNotNull(User::getRoleHistory)
+                .ne(User::getRoleHistory, ""));
+        Map<Integer, List<AlumniEntry>> entriesByUser = new TreeMap<>();
+        for (User user : users) {
+            List<AlumniEntry> entries = toEntries(user);
+            if (!entries.isEmpty()) {
+                entriesByUser.put(user.getUserId(), entries);
+            }
+        }
+        return entriesByUser;
+    }
+
+    /**
+     * 解析单个用户的任职经历，格式不符的条目跳过
+     */
+    private static List<AlumniEntry> toEntries(User user) {
+        List<AlumniEntry> entries = new ArrayList<>();
+        for (String entry : RoleHistoryParser.parseRoleHistory(user.getRoleHistory())) {
+            try {
+                RoleHistoryParser.ParsedRole parsed = RoleHistoryParser.parseSingleRole(entry);
+                entries.add(new AlumniEntry(parsed.year(), user.getName(), parsed.role()));
+            } catch (BusinessException e) {
+                logger.debug("角色信息格式不匹配: {}", entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * 按届别分组（届别倒序，同届按用户ID、身份历史顺序），同一人有多重身份时只算作1位成员
+     */
+    private Snapshot buildSnapshot(Map<Integer, List<AlumniEntry>> entriesByUser) {
+        TreeMap<Integer, List<AlumniMember>> byYear = new TreeMap<>(Collections.reverseOrder());
+        for (List<AlumniEntry> entries : entriesByUser.values()) {
+            for (AlumniEntry entry : entries) {
+                byYear.computeIfAbsent(entry.year(), y -> new ArrayList<>())
+                        .add(new AlumniMember(entry.name(), entry.role()));
+            }
+        }
+
+        List<AlumniResponse> alumni = new ArrayList<>(byYear.size());
+        for (Map.Entry<Integer, List<AlumniMember>> entry : byYear.entrySet()) {
+            Set<String> uniqueNames = new HashSet<>();
+            for (AlumniMember member : entry.getValue()) {
+                uniqueNames.add(member.getName());
+            }
+            alumni.add(new AlumniResponse(entry.getKey(), entry.getValue(), uniqueNames.size()));
+        }
+
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(ApiResponse.success("查询成功", alumni));
+            String etag = SecureUtil.sha256(new String(body, StandardCharsets.UTF_8)).substring(0, ETAG_LENGTH);
+            return new Snapshot(etag, body, Collections.unmodifiableList(alumni));
+        } catch (JsonProcessingException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "获取往届部员信息失败", e);
+        }
+    }
+
+    /**
+     * 单条任职经历
+     */
+    public record AlumniEntry(int year, String name, String role) {}
+
+    /**
+     * 往届部员快照
+     * body: 序列化好的 ApiResponse，接口直接写出
+     */
+    public record Snapshot(String etag, byte[] body, List<AlumniResponse> alumni) {}
+}
@@ -9,6 +9,7 @@ import com.redmoon2333.exception.BusinessException;
 import com.redmoon2333.exception.ErrorCode;
 import com.redmoon2333.mapper.ActivationCodeMapper;
 import com.redmoon2333.mapper.UserMapper;
+import com.redmoon2333.util.JwtPrincipal;
 import com.redmoon2333.util.JwtUtil;
 import com.redmoon2333.util.RoleHistoryParser;
 // import com.redmoon2333.util.MQSender;
@@ -44,25 +45,53 @@ public class AuthService {
     @Autowired
     private JwtUtil jwtUtil;
 
+    @Autowired
+    private LoginProtectionService loginProtectionService;
+
+    @Autowired
+    private UserRoleService userRoleService;
+
     // private final MQSender mqSender; // MQ 已暂时禁用
 
     /**
      * 用户登录
+     * Why: 密码校验在 LoginProtectionService 的有界线程池中执行，失败次数超限的用户名直接拒绝，
+     *      登录高峰不会占满请求线程；IP超限时只拒绝密码错误的尝试，同一出口IP下的其他用户不受影响
      * @param loginRequest 登录请求参数
+     * @param clientIp 客户端IP，用于按IP节流
      * @return 包含JWT令牌和用户信息的Map
      * @throws BusinessException 登录失败时抛出异常
      */
-    public Map<String, Object> login(LoginRequest loginRequest) {
+    public Map<String, Object> login(LoginRequest loginRequest, String clientIp) {
+        String username = loginRequest.getUsername();
+        boolean ipThrottled = loginProtectionService.checkAttemptAllowed(username, clientIp);
+
         // 查找用户
-        User user = userMapper.findByUsername(loginRequest.getUsername());
+        User user = userMapper.findByUsername(username);
         if (user == null) {
+            if (ipThrottled) {
+                loginProtectionService.rejectThrottledIp(username, clientIp);
+            }
+            loginProtectionService.recordFailure(username, clientIp);
             throw new BusinessException(ErrorCode.INVALID_CREDENTIALS);
         }
         
         // 验证密码
-        if (!passwordEncoder.matches(loginRequest.getPassword(), user.getPassword())) {
+        LoginProtectionService.VerifyResult verifyResult =
+                loginProtectionService.verifyPassword(loginRequest.getPassword(), user.getPassword());
+        if (!verifyResult.matched()) {
+            if (ipThrottled) {
+                loginProtectionService.rejectThrottledIp(username, clientIp);
+            }
+            loginProtectionService.recordFailure(username, clientIp);
             throw new BusinessException(ErrorCode.INVALID_CREDENTIALS);
         }
+        loginProtectionService.recordSuccess(username);
+
+        // 配置的 BCrypt 强度变化后，按新强度透明重新哈希
+        if (verifyResult.upgradedHash() != null) {
+            upgradePasswordHash(user, verifyResult.upgradedHash());
+        }
         
         // 生成JWT令牌
         String token = jwtUtil.generateToken(user.getUserId(), user.getUsername(), user.getRoleHistory());
@@ -76,6 +105,22 @@ public class AuthService {
         return result;
     }
     
+    /**
+     * 写回按新强度生成的密码哈希，失败不影响本次登录（下次登录会再次尝试）
+     */
+    private void upgradePasswordHash(User user, String upgradedHash) {
+        try {
+            User update = new User();
+            update.setUserId(user.getUserId());
+            update.setPassword(upgradedHash);
+            userMapper.updateById(update);
+            user.setPassword(upgradedHash);
+            log.info("用户 {} 的密码哈希已按当前强度重新生成", user.getUsername());
+        } catch (Exception e) {
+            log.warn("用户 {} 的密码哈希升级失败: {}", user.getUsername(), e.getMessage());
+        }
+    }
+    
     /**
      * 用户注册
      * @param registerRequest 注册请求参数
@@ -134,6 +179,7 @@ public class AuthService {
         log.info("Registering user with name: {}", registerRequest.getName());
         
         userMapper.insert(newUser);
+        userRoleService.sync(newUser.getUserId(), newUser.getRoleHistory());
         
         // 更新激活码状态
         activationCode.setStatus(ActivationStatus.已使用);
@@ -154,12 +200,12 @@ public class AuthService {
      * @throws BusinessException 令牌无效时抛出异常
      */
     public User getUserFromToken(String token) {
-        if (!jwtUtil.validateToken(token)) {
+        JwtPrincipal principal = jwtUtil.authenticate(token);
+        if (principal == null) {
             throw new BusinessException(ErrorCode.INVALID_TOKEN);
         }
         
-        String username = jwtUtil.getUsernameFromToken(token);
-        return userMapper.findByUsername(username);
+        return userMapper.findByUsername(principal.username());
     }
     
     /**
@@ -168,12 +214,22 @@ public class AuthService {
      * @return 更新后的用户信息
      * @throws BusinessException 更新失败时抛出异常
      */
+    @Transactional(rollbackFor = Exception.class)
     public User updateUserInfo(User user) {
+        User before = userMapper.selectById(user.getUserId());
         int result = userMapper.updateById(user);
         if (result <= 0) {
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "用户信息更新失败");
         }
-        return userMapper.selectById(user.getUserId());
+        // 按库中实际保存的身份历史判断（updateById 会跳过 null 字段）；
+        // 身份历史未变时不重建身份行，避免只改姓名也触发部长唯一性校验
+        User updated = userMapper.selectById(user.getUserId());
+        if (before == null || !Objects.equals(before.getRoleHistory(), updated.getRoleHistory())) {
+            userRoleService.sync(updated.getUserId(), updated.getRoleHistory());
+        } else {
+            userRoleService.notifyProfileChanged(updated.getUserId());
+        }
+        return updated;
     }
     
     /**
@@ -186,13 +242,13 @@ public class AuthService {
     @Transactional(rollbackFor = Exception.class)
     public ActivationCode generateActivationCode(String token, int expireDays) {
         // 验证令牌
-        if (!jwtUtil.validateToken(token)) {
+        JwtPrincipal principal = jwtUtil.authenticate(token);
+        if (principal == null) {
             throw new BusinessException(ErrorCode.INVALID_TOKEN);
         }
         
         // 获取用户信息
-        String username = jwtUtil.getUsernameFromToken(token);
-        User user = userMapper.findByUsername(username);
+        User user = userMapper.findByUsername(principal.username());
         if (user == null) {
             throw new BusinessException(ErrorCode.USER_NOT_FOUND);
         }
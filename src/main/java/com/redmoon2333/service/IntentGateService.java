@@ -0,0 +1,252 @@
+package com.redmoon2333.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 本地意图闸门
+ *
+ * 在进入RAG检索与工具调用之前判断一条消息是否只是寒暄（问候、致谢、告别等），
+ * 寒暄直接走普通对话，不做查询向量化、KNN检索，也不附带工具定义：
+ * - 规则：命中业务关键词（成员、部门、活动、资料……）一律放行；短消息命中寒暄短语判为寒暄
+ * - 最近质心：规则无法判断时，用字符一元/二元组哈希向量与两类示例句的质心比较余弦相似度
+ * 两步都在进程内完成，不调用任何上游，耗时在微秒级
+ *
+ * Why: 之前是否检索、是否挂工具完全由前端开关决定，"你好""谢谢"也要付出向量化、KNN
+ *      和更大提示词的代价
+ *
+ * Warning: 只会关闭前端打开的能力，不会打开前端未请求的能力；拿不准时放行，宁可多检索也不漏检索
+ */
+@Service
+public class IntentGateService {
+    private static final Logger logger = LoggerFactory.getLogger(IntentGateService.class);
+
+    // 哈希向量维度（2的幂）
+    private static final int DIMENSIONS = 256;
+    private static final int DIMENSION_BITS = 8;
+
+    // 命中即放行的业务关键词
+    private static final List<String> DOMAIN_KEYWORDS = List.of(
+            "成员", "部长", "部门", "人力", "中心", "活动", "任务", "资料", "策划", "换届", "招新",
+            "届", "级", "多少人", "统计", "名单", "搜索", "查找", "查询", "谁是", "联系方式", "文档"
+    );
+
+    // 短消息完全匹配或以其开头即判为寒暄
+    private static final Set<String> SMALL_TALK_PHRASES = Set.of(
+            "你好", "您好", "hi", "hello", "hey", "嗨", "哈喽", "在吗", "在不在",
+            "谢谢", "感谢", "多谢", "thanks", "thankyou", "辛苦了", "好的", "好", "嗯", "嗯嗯", "ok", "收到",
+            "再见", "拜拜", "bye", "晚安", "早上好", "早安", "中午好", "下午好", "晚上好", "哈哈", "哈哈哈"
+    );
+
+    // 寒暄短语后允许附带的语气字（标点已在 normalize 中去除）
+    private static final String MODAL_PARTICLES = "呀啊啦哈呢吖嘛哦喔";
+    private static final int MAX_MODAL_SUFFIX = 2;
+
+    // 质心示例句
+    private static final List<String> SMALL_TALK_EXAMPLES = List.of(
+            "你好呀", "您好，请问你是谁", "你叫什么名字", "你是谁", "谢谢你的帮助", "非常感谢",
+            "好的我知道了", "太棒了", "辛苦啦", "早上好呀", "晚上好", "再见啦", "哈哈哈好有意思",
+            "今天心情不错", "你真厉害", "在吗在吗", "没事了", "明白了谢谢",
+            "你能做什么", "讲个笑话吧", "最近怎么样", "早上好小助手"
+    );
+    private static final List<String> TASK_EXAMPLES = List.of(
+            "帮我查一下张三是哪一届的", "部门现在有多少人", "2023级有哪些成员", "最近有什么活动",
+            "帮我找一下迎新活动的策划资料", "往届活动都有哪些", "现任部长是谁", "我的任务什么时候截止",
+            "如何写一份活动策划案", "人力资源中心是做什么的", "招新流程是怎样的", "请总结一下这份资料",
+            "怎么申请活动场地", "给我推荐一些团建活动方案", "帮我写一份通知", "介绍一下部门的规章制度"
+    );
+
+    @Autowired
+    private PerformanceMonitorService performanceMonitorService;
+
+    @Value("${ai.intent-gate.enabled:true}")
+    private boolean enabled;
+
+    // 判为寒暄所需的最低相似度
+    @Value("${ai.intent-gate.min-similarity:0.3}")
+    private double minSimilarity;
+
+    // 寒暄质心需领先业务质心的幅度
+    @Value("${ai.intent-gate.min-margin:0.15}")
+    private double minMargin;
+
+    // 超过该长度（去除标点后）不判为寒暄
+    @Value("${ai.intent-gate.max-length:20}")
+    private int maxLength;
+
+    private float[] smallTalkCentroid;
+    private float[] taskCentroid;
+
+    @PostConstruct
+    public void init() {
+        smallTalkCentroid = centroid(SMALL_TALK_EXAMPLES);
+        taskCentroid = centroid(TASK_EXAMPLES);
+        logger.info("意图闸门初始化完成: enabled={}, 寒暄示例={}, 业务示例={}",
+                enabled, SMALL_TALK_EXAMPLES.size(), TASK_EXAMPLES.size());
+    }
+
+    /**
+     * 决定本次对话需要哪些高开销能力
+     *
+     * @param message 用户消息
+     * @param useRAG 前端是否请求RAG检索
+     * @param enableTools 前端是否请求工具调用
+     * @return 实际启用的能力
+     */
+    public Decision evaluate(String message, boolean useRAG, boolean enableTools) {
+        if (!enabled || (!useRAG && !enableTools)) {
+            return new Decision(useRAG, enableTools, Intent.TASK);
+        }
+
+        long start = System.nanoTime();
+        Classification result = classify(message);
+        performanceMonitorService.recordIntentRecognition((System.nanoTime() - start) / 1000, result.method());
+
+        boolean smallTalk = result.intent() == Intent.SMALL_TALK;
+        performanceMonitorService.recordIntentGate(smallTalk);
+        if (smallTalk) {
+            logger.debug("意图闸门判定为寒暄（{}），跳过RAG与工具", result.method());
+            return new Decision(false, false, Intent.SMALL_TALK);
+        }
+        return new Decision(useRAG, enableTools, Intent.TASK);
+    }
+
+    /**
+     * 分类一条消息
+     *
+     * @param message 用户消息
+     * @return 意图及识别方法（rule/centroid）
+     */
+    public Classification classify(String message) {
+        String text = normalize(message);
+        if (text.isEmpty()) {
+            return new Classification(Intent.SMALL_TALK, "rule");
+        }
+        for (String keyword : DOMAIN_KEYWORDS) {
+            if (text.contains(keyword)) {
+                return new Classification(Intent.TASK, "rule");
+            }
+        }
+        if (text.length() > maxLength) {
+            return new Classification(Intent.TASK, "rule");
+        }
+        if (isSmallTalkPhrase(text)) {
+            return new Classification(Intent.SMALL_TALK, "rule");
+        }
+
+        float[] vector = vectorize(text);
+        double smallTalkScore = dot(vector, smallTalkCentroid);
+        double taskScore = dot(vector, taskCentroid);
+        Intent intent = smallTalkScore >= minSimilarity && smallTalkScore - taskScore >= minMargin
+                ? Intent.SMALL_TALK : Intent.TASK;
+        return new Classification(intent, "centroid");
+    }
+
+    private boolean isSmallTalkPhrase(String text) {
+        if (SMALL_TALK_PHRASES.contains(text)) {
+            return true;
+        }
+        // 形如"你好呀""谢谢啦"：寒暄短语加一两个语气字；其他后缀（如"你好张三""okr"）不算寒暄
+        int end = text.length();
+        while (end > 0 && text.length() - end < MAX_MODAL_SUFFIX && MODAL_PARTICLES.indexOf(text.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        return end < text.length() && end > 0 && SMALL_TALK_PHRASES.contains(text.substring(0, end));
+    }
+
+    /**
+     * 小写并去除空白与标点，只保留字母、数字和汉字
+     */
+    private static String normalize(String message) {
+        if (message == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(message.length());
+        for (int i = 0; i < message.length(); i++) {
+            char c = message.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(c);
+            }
+        }
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+
+    private static float[] centroid(List<String> examples) {
+        float[] sum = new float[DIMENSIONS];
+        for (String example : examples) {
+            float[] vector = vectorize(normalize(example));
+            for (int i = 0; i < DIMENSIONS; i++) {
+                sum[i] += vector[i];
+            }
+        }
+        normalizeInPlace(sum);
+        return sum;
+    }
+
+    /**
+     * 字符一元组与二元组的特征哈希向量（L2归一化）
+     */
+    private static float[] vectorize(String text) {
+        float[] vector = new float[DIMENSIONS];
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            vector[bucket(c)] += 1f;
+            if (i + 1 < text.length()) {
+                // 二元组权重更高，区分度比单字好
+                vector[bucket(c * 31 + text.charAt(i + 1) + 0x10000)] += 1.5f;
+            }
+        }
+        normalizeInPlace(vector);
+        return vector;
+    }
+
+    private static int bucket(int feature) {
+        return (feature * 0x9E3779B1) >>> (32 - DIMENSION_BITS);
+    }
+
+    private static void normalizeInPlace(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        if (norm == 0) {
+            return;
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= scale;
+        }
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    public enum Intent {
+        SMALL_TALK,
+        TASK
+    }
+
+    /**
+     * 分类结果
+     */
+    public record Classification(Intent intent, String method) {}
+
+    /**
+     * 闸门决定
+     * useRetrieval/useTools 为实际启用的能力，总是前端请求的子集
+     */
+    public record Decision(boolean useRetrieval, boolean useTools, Intent intent) {}
+}
@@ -1,21 +1,37 @@
 package com.redmoon2333.service;
 
+import cn.hutool.crypto.SecureUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.Cursor;
-import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.io.IOException;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * JWT-Redis集成服务类
  * 处理JWT令牌在Redis中的存储、验证和黑名单管理
+ *
+ * 存储结构：
+ * - jwt:st:{digest}：令牌状态，值为 "1:{username}"（有效）或 "0"（已撤销），TTL 与令牌剩余有效期一致
+ * - user:token:{username}：Set，该用户已签发令牌的 digest，用于强制登出所有设备
+ * - jwt:gen:{userId}：用户令牌代数，签发时写入令牌声明，强制下线时递增
+ * - jwt:active / jwt:revoked：ZSet，按过期时间排序的有效令牌与撤销记录索引，用于监控计数
+ * digest 为令牌 SHA-256 的前32位十六进制，定长，与令牌长度无关
+ *
+ * Why: 之前每个请求先查 jwt:blacklist:{token} 再查 jwt:token:{token}，两次串行往返，
+ *      且 key 以几百字节的完整令牌为后缀；合并为一个定长 key 后一次 GET 即可得到状态
+ *
+ * 近缓存：最近验证有效的令牌状态缓存在本地，撤销通过 Redis 频道广播剔除（见 TokenStateCache）
+ *
+ * Warning: 升级前签发的令牌仍使用 jwt:token:/jwt:blacklist: 旧key，新key不存在时用一次 MGET 回查旧key；
+ *          旧key最迟在一个 jwt.expiration 周期后全部过期，之后回查只会发生在无效令牌上
  */
 @Service
 public class JwtRedisService {
@@ -25,29 +41,160 @@ public class JwtRedisService {
     @Autowired
     private StringRedisTemplate stringRedisTemplate;
 
+    @Autowired
+    private TokenStateCache tokenStateCache;
+
     @Value("${jwt.expiration}")
     private Long jwtExpiration;
 
     // Redis key前缀
+    private static final String TOKEN_STATE_PREFIX = "jwt:st:";
+    private static final String USER_TOKEN_PREFIX = "user:token:";
+    // 有效令牌索引（ZSet，member 为 digest，score 为令牌过期时间），用于监控计数
+    private static final String ACTIVE_TOKENS_KEY = "jwt:active";
+    // 用户令牌代数（强制下线时递增）
+    private static final String USER_GENERATION_PREFIX = "jwt:gen:";
+    // 旧版本key前缀（仅用于兼容升级前签发的令牌）
     private static final String JWT_TOKEN_PREFIX = "jwt:token:";
     private static final String JWT_BLACKLIST_PREFIX = "jwt:blacklist:";
-    private static final String USER_TOKEN_PREFIX = "user:token:";
+
+    // 令牌状态值（已撤销为 "0"，由撤销脚本写入）
+    private static final String STATE_VALID_PREFIX = "1:";
+
+    // digest长度（SHA-256 前128位）
+    private static final int DIGEST_LENGTH = 32;
+
+    /**
+     * 令牌在Redis中的状态
+     */
+    public enum TokenState {
+        /** 已签发且未撤销 */
+        VALID,
+        /** 已登出或被撤销 */
+        REVOKED,
+        /** Redis中没有记录（从未签发或已过期） */
+        UNKNOWN
+    }
+
+    /**
+     * 计算令牌digest
+     * @param token JWT令牌
+     * @return 定长digest
+     */
+    public static String digest(String token) {
+        return SecureUtil.sha256(token).substring(0, DIGEST_LENGTH);
+    }
+
+    /**
+     * 签发：核对令牌声明中的代数与用户当前代数，一致时写入令牌状态，关联到用户的令牌集合，并加入有效令牌索引
+     * KEYS[1]=令牌状态key，KEYS[2]=用户令牌集合，KEYS[3]=jwt:active，KEYS[4]=jwt:gen:{userId}（空字符串表示不核对）
+     * ARGV[1]=状态值，ARGV[2]=digest，ARGV[3]=有效期（毫秒），ARGV[4]=过期时间戳，ARGV[5]=令牌声明中的代数
+     * 返回用户当前代数；与 ARGV[5] 不同时未写入任何内容
+     */
+    private static final RedisScript<Long> ISSUE_SCRIPT = new DefaultRedisScript<>("""
+            local expected = tonumber(ARGV[5])
+            if KEYS[4] ~= '' then
+              local generation = tonumber(redis.call('GET', KEYS[4]) or '0')
+              if generation ~= expected then
+                return generation
+              end
+            end
+            redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[3])
+            redis.call('SADD', KEYS[2], ARGV[2])
+            redis.call('PEXPIRE', KEYS[2], ARGV[3])
+            redis.call('ZADD', KEYS[3], ARGV[4], ARGV[2])
+            return expected
+            """, Long.class);
+
+    /**
+     * 撤销：把 ARGV[6..] 中的 digest 以及 KEYS[2] 集合中的全部 digest 标记为已撤销，
+     * 写入撤销记录、移出有效令牌索引并广播，最后删除 KEYS[2]
+     * KEYS[1]=jwt:revoked，KEYS[2]=用户令牌集合（空字符串表示不撤销集合），KEYS[3]=jwt:active
+     * ARGV[1]=状态key前缀，ARGV[2]=撤销记录保留秒数，ARGV[3]=撤销记录过期时间戳，ARGV[4]=广播频道，ARGV[5]=digest长度
+     * 返回处理过的全部成员；长度不等于digest长度的成员（升级前存入的完整令牌）原样返回，不做处理
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> REVOKE_SCRIPT = new DefaultRedisScript<>("""
+            local members = {}
+            if KEYS[2] ~= '' then
+              members = redis.call('SMEMBERS', KEYS[2])
+            end
+            for i = 6, #ARGV do
+              members[#members + 1] = ARGV[i]
+            end
+            local digestLength = tonumber(ARGV[5])
+            for _, digest in ipairs(members) do
+              if string.len(digest) == digestLength then
+                redis.call('SET', ARGV[1] .. digest, '0', 'EX', ARGV[2])
+                redis.call('ZADD', KEYS[1], ARGV[3], digest)
+                redis.call('ZREM', KEYS[3], digest)
+                redis.call('PUBLISH', ARGV[4], digest)
+              end
+            end
+            if KEYS[2] ~= '' then
+              redis.call('DEL', KEYS[2])
+            end
+            return members
+            """, List.class);
+
+    /**
+     * 续期：令牌仍有效时延长状态key的有效期，并同步更新有效令牌索引中的过期时间
+     * KEYS[1]=令牌状态key，KEYS[2]=jwt:active
+     * ARGV[1]=有效状态前缀，ARGV[2]=digest，ARGV[3]=有效期（毫秒），ARGV[4]=过期时间戳
+     * 返回1表示已续期，0表示令牌不存在或已撤销
+     */
+    private static final RedisScript<Long> EXTEND_SCRIPT = new DefaultRedisScript<>("""
+            local value = redis.call('GET', KEYS[1])
+            if not value or string.sub(value, 1, string.len(ARGV[1])) ~= ARGV[1] then
+              return 0
+            end
+            redis.call('PEXPIRE', KEYS[1], ARGV[3])
+            redis.call('ZADD', KEYS[2], ARGV[4], ARGV[2])
+            return 1
+            """, Long.class);
+
+    /**
+     * 强制下线：递增用户令牌代数并广播
+     * KEYS[1]=jwt:gen:{userId}；ARGV[1]=广播频道，ARGV[2]=广播消息前缀
+     */
+    private static final RedisScript<Long> BUMP_GENERATION_SCRIPT = new DefaultRedisScript<>("""
+            local generation = redis.call('INCR', KEYS[1])
+            redis.call('PUBLISH', ARGV[1], ARGV[2] .. generation)
+            return generation
+            """, Long.class);
 
     /**
      * 存储JWT令牌到Redis
+     * Why: 状态写入、集合关联、集合续期在一个脚本内完成，登录只有一次Redis往返
      * @param token JWT令牌
      * @param username 用户名
      */
     public void storeToken(String token, String username) {
-        String key = JWT_TOKEN_PREFIX + token;
-        String userKey = USER_TOKEN_PREFIX + username;
-
-        // 存储令牌，设置过期时间
-        stringRedisTemplate.opsForValue().set(key, username, jwtExpiration, TimeUnit.MILLISECONDS);
+        issueToken(null, token, username, 0L);
+    }
 
-        // 将令牌关联到用户，用于后续登出时清除该用户的所有令牌
-        stringRedisTemplate.opsForSet().add(userKey, token);
-        stringRedisTemplate.expire(userKey, jwtExpiration, TimeUnit.MILLISECONDS);
+    /**
+     * 签发令牌：代数核对与存储在同一脚本内完成
+     * Why: 签名前不再单独读取 jwt:gen，令牌声明中的代数取自本地缓存（未缓存时为0），
+     *      由脚本核对；绝大多数用户从未被强制下线过，登录只有一次Redis往返
+     * @param userId 用户ID，为null时不核对代数
+     * @param token 已签名的JWT令牌
+     * @param username 用户名
+     * @param generation 令牌声明中的代数
+     * @return 用户当前代数；与 generation 不同时令牌未被存储，调用方需按返回值重新签发
+     */
+    public long issueToken(Integer userId, String token, String username, long generation) {
+        String digest = digest(token);
+        Long current = stringRedisTemplate.execute(ISSUE_SCRIPT,
+                List.of(TOKEN_STATE_PREFIX + digest, USER_TOKEN_PREFIX + username, ACTIVE_TOKENS_KEY,
+                        userId != null ? USER_GENERATION_PREFIX + userId : ""),
+                STATE_VALID_PREFIX + username, digest, String.valueOf(jwtExpiration),
+                String.valueOf(System.currentTimeMillis() + jwtExpiration), String.valueOf(generation));
+        long result = current != null ? current : generation;
+        if (userId != null) {
+            tokenStateCache.cacheGeneration(userId, result);
+        }
+        return result;
     }
 
     /**
@@ -60,15 +207,51 @@ public class JwtRedisService {
         storeToken(token, username);
     }
 
+    /**
+     * 查询令牌状态（一次Redis往返）
+     * @param token JWT令牌
+     * @return 令牌状态
+     */
+    public TokenState getTokenState(String token) {
+        String digest = digest(token);
+        // 近缓存命中且一定未被撤销时不访问Redis
+        if (tokenStateCache.isCachedValid(digest)) {
+            return TokenState.VALID;
+        }
+        String value = stringRedisTemplate.opsForValue().get(TOKEN_STATE_PREFIX + digest);
+        if (value != null) {
+            if (value.startsWith(STATE_VALID_PREFIX)) {
+                tokenStateCache.cacheValid(digest);
+                return TokenState.VALID;
+            }
+            return TokenState.REVOKED;
+        }
+        return getLegacyTokenState(token);
+    }
+
+    /**
+     * 查询升级前签发的令牌状态
+     * Why: 黑名单与有效令牌两个旧key用一次 MGET 取回，不增加串行往返
+     */
+    private TokenState getLegacyTokenState(String token) {
+        List<String> values = stringRedisTemplate.opsForValue()
+                .multiGet(List.of(JWT_BLACKLIST_PREFIX + token, JWT_TOKEN_PREFIX + token));
+        if (values == null || values.size() < 2) {
+            return TokenState.UNKNOWN;
+        }
+        if (values.get(0) != null) {
+            return TokenState.REVOKED;
+        }
+        return values.get(1) != null ? TokenState.VALID : TokenState.UNKNOWN;
+    }
+
     /**
      * 验证令牌是否有效（存在于Redis中且未过期）
      * @param token JWT令牌
      * @return 是否有效
      */
     public boolean isTokenValid(String token) {
-        String key = JWT_TOKEN_PREFIX + token;
-        Boolean hasKey = stringRedisTemplate.hasKey(key);
-        return hasKey != null && hasKey;
+        return getTokenState(token) == TokenState.VALID;
     }
 
     /**
@@ -77,8 +260,11 @@ public class JwtRedisService {
      * @return 用户名，如果不存在则返回null
      */
     public String getUsernameFromToken(String token) {
-        String key = JWT_TOKEN_PREFIX + token;
-        return stringRedisTemplate.opsForValue().get(key);
+        String value = stringRedisTemplate.opsForValue().get(TOKEN_STATE_PREFIX + digest(token));
+        if (value != null) {
+            return value.startsWith(STATE_VALID_PREFIX) ? value.substring(STATE_VALID_PREFIX.length()) : null;
+        }
+        return stringRedisTemplate.opsForValue().get(JWT_TOKEN_PREFIX + token);
     }
 
     /**
@@ -86,13 +272,8 @@ public class JwtRedisService {
      * @param token JWT令牌
      */
     public void blacklistToken(String token) {
-        String key = JWT_BLACKLIST_PREFIX + token;
         // 黑名单中的令牌保留一段时间，防止重放攻击
-        stringRedisTemplate.opsForValue().set(key, "blacklisted", jwtExpiration, TimeUnit.MILLISECONDS);
-
-        // 从有效令牌集合中移除
-        String tokenKey = JWT_TOKEN_PREFIX + token;
-        stringRedisTemplate.delete(tokenKey);
+        revokeDigest(digest(token), jwtExpiration / 1000);
     }
 
     /**
@@ -101,12 +282,53 @@ public class JwtRedisService {
      * @param expirationSeconds 过期时间（秒）
      */
     public void addToBlacklist(String token, long expirationSeconds) {
-        String key = JWT_BLACKLIST_PREFIX + token;
-        stringRedisTemplate.opsForValue().set(key, "blacklisted", expirationSeconds, TimeUnit.SECONDS);
+        revokeDigest(digest(token), expirationSeconds);
+    }
+
+    /**
+     * 把令牌状态改为已撤销（覆盖有效状态），并广播给所有实例的近缓存
+     */
+    private void revokeDigest(String digest, long expirationSeconds) {
+        revoke(null, List.of(digest), expirationSeconds);
+    }
+
+    /**
+     * 执行撤销脚本
+     * @param userKey 需要整体撤销的用户令牌集合，为null时只撤销 digests
+     * @param digests 需要撤销的digest
+     * @param expirationSeconds 撤销记录保留时间（秒），应不短于令牌剩余有效期
+     */
+    private void revoke(String userKey, List<String> digests, long expirationSeconds) {
+        long seconds = Math.max(expirationSeconds, 1);
+        List<String> args = new ArrayList<>(digests.size() + 5);
+        args.add(TOKEN_STATE_PREFIX);
+        args.add(String.valueOf(seconds));
+        args.add(String.valueOf(System.currentTimeMillis() + seconds * 1000));
+        args.add(TokenStateCache.REVOCATION_CHANNEL);
+        args.add(String.valueOf(DIGEST_LENGTH));
+        args.addAll(digests);
+
+        // Warning: 脚本按前缀拼接状态key，要求单节点Redis（与当前部署一致）
+        List<?> members = stringRedisTemplate.execute(REVOKE_SCRIPT,
+                List.of(TokenStateCache.REVOKED_KEY, userKey != null ? userKey : "", ACTIVE_TOKENS_KEY),
+                args.toArray());
+        if (members == null) {
+            return;
+        }
 
-        // 从有效令牌集合中移除
-        String tokenKey = JWT_TOKEN_PREFIX + token;
-        stringRedisTemplate.delete(tokenKey);
+        List<String> legacyDigests = new ArrayList<>();
+        for (Object member : members) {
+            String value = String.valueOf(member);
+            if (value.length() == DIGEST_LENGTH) {
+                tokenStateCache.applyRevocation(value);
+            } else {
+                // 升级前的集合成员是完整令牌，换算为digest后再撤销一次
+                legacyDigests.add(digest(value));
+            }
+        }
+        if (!legacyDigests.isEmpty()) {
+            revoke(null, legacyDigests, seconds);
+        }
     }
 
     /**
@@ -115,21 +337,21 @@ public class JwtRedisService {
      * @return 是否在黑名单中
      */
     public Boolean isTokenBlacklisted(String token) {
-        String key = JWT_BLACKLIST_PREFIX + token;
-        Boolean hasKey = stringRedisTemplate.hasKey(key);
-        return hasKey != null && hasKey;
+        return getTokenState(token) == TokenState.REVOKED;
     }
 
     /**
      * 延长令牌有效期（刷新时使用）
+     * Why: 只延长状态key而不更新 jwt:active 中的分数，到原过期时间后令牌会被清理任务移出索引，
+     *      有效令牌计数偏低；两者在同一脚本内更新
      * @param token JWT令牌
      */
     public void extendTokenExpiration(String token) {
-        String key = JWT_TOKEN_PREFIX + token;
-        Boolean hasKey = stringRedisTemplate.hasKey(key);
-        if (hasKey != null && hasKey) {
-            stringRedisTemplate.expire(key, jwtExpiration, TimeUnit.MILLISECONDS);
-        }
+        String digest = digest(token);
+        stringRedisTemplate.execute(EXTEND_SCRIPT,
+                List.of(TOKEN_STATE_PREFIX + digest, ACTIVE_TOKENS_KEY),
+                STATE_VALID_PREFIX, digest, String.valueOf(jwtExpiration),
+                String.valueOf(System.currentTimeMillis() + jwtExpiration));
     }
 
     /**
@@ -158,12 +380,56 @@ public class JwtRedisService {
 
     /**
      * 撤销用户的所有令牌（强制下线）
+     * Why: 只递增用户令牌代数，之前签发的令牌代数更低、验证时被拒绝；
+     *      不需要逐个令牌写黑名单，耗时与会话数无关，也不增加黑名单key
+     * Warning: 代数key不设过期时间（每个被强制下线过的用户一个小整数）；若过期归零，
+     *          之后再次递增得到的代数可能与已签发令牌相同，导致撤销失效
      * @param userId 用户ID
      */
     public void revokeUserTokens(Integer userId) {
-        // 通过用户ID查找用户名，然后撤销该用户的所有令牌
-        // 这里简化处理，实际应该根据userId查询用户名
-        logger.info("撤销用户 {} 的所有令牌", userId);
+        Long generation = stringRedisTemplate.execute(BUMP_GENERATION_SCRIPT,
+                List.of(USER_GENERATION_PREFIX + userId),
+                TokenStateCache.REVOCATION_CHANNEL,
+                TokenStateCache.GENERATION_MESSAGE_PREFIX + userId + ":");
+        if (generation != null) {
+            tokenStateCache.applyGeneration(userId, generation);
+        }
+        logger.info("撤销用户 {} 的所有令牌，令牌代数递增为 {}", userId, generation);
+    }
+
+    /**
+     * 获取用户当前令牌代数（直接读Redis，签发令牌时使用）
+     * @param userId 用户ID
+     * @return 代数，从未强制下线过的用户为0
+     */
+    public long getUserTokenGeneration(Integer userId) {
+        if (userId == null) {
+            return 0L;
+        }
+        String value = stringRedisTemplate.opsForValue().get(USER_GENERATION_PREFIX + userId);
+        long generation = value != null ? Long.parseLong(value) : 0L;
+        tokenStateCache.cacheGeneration(userId, generation);
+        return generation;
+    }
+
+    /**
+     * 签发令牌时预估的用户令牌代数（只读本地缓存，不访问Redis）
+     * @param userId 用户ID
+     * @return 缓存的代数，未缓存时为0（由签发脚本核对）
+     */
+    public long getIssueGeneration(Integer userId) {
+        Long cached = userId != null ? tokenStateCache.getCachedGeneration(userId) : null;
+        return cached != null ? cached : 0L;
+    }
+
+    /**
+     * 获取用户当前令牌代数（优先读本地缓存，验证令牌时使用）
+     * @param userId 用户ID
+     * @return 代数
+     */
+    public long getCachedUserTokenGeneration(Integer userId) {
+        Long cached = tokenStateCache.getCachedGeneration(userId);
+        return cached != null ? cached : getUserTokenGeneration(userId);
     }
 
     /**
@@ -171,101 +437,51 @@ public class JwtRedisService {
      * @param username 用户名
      */
     public void removeAllUserTokens(String username) {
-        String userKey = USER_TOKEN_PREFIX + username;
-
-        // 获取该用户的所有令牌
-        var tokens = stringRedisTemplate.opsForSet().members(userKey);
-        if (tokens != null) {
-            for (String token : tokens) {
-                // 将每个令牌加入黑名单
-                blacklistToken(token);
-            }
-        }
-
-        // 删除用户令牌集合
-        stringRedisTemplate.delete(userKey);
+        // Why: 读取集合、逐个撤销、删除集合在一个脚本内完成，往返次数与会话数无关
+        revoke(USER_TOKEN_PREFIX + username, List.of(), jwtExpiration / 1000);
     }
 
     /**
      * 获取Redis中存储的令牌数量（监控用）
-     * 使用SCAN命令替代keys()，避免阻塞Redis
+     * Why: 之前每次调用都 SCAN 整个键空间（含向量文档与对话记忆），改为对有效令牌索引做 ZCOUNT，
+     *      只统计未过期的部分，读取不产生写入
      * @return 令牌数量
      */
-    @SuppressWarnings("unused")
     public long getActiveTokenCount() {
-        AtomicLong count = new AtomicLong(0);
-        Cursor<byte[]> cursor = null;
-        try {
-            var connectionFactory = stringRedisTemplate.getConnectionFactory();
-            if (connectionFactory == null) {
-                logger.error("Redis连接工厂为空");
-                return -1;
-            }
-            var connection = connectionFactory.getConnection();
-            if (connection == null) {
-                logger.error("Redis连接为空");
-                return -1;
-            }
-            cursor = connection.scan(ScanOptions.scanOptions().match(JWT_TOKEN_PREFIX + "*").count(1000).build());
-            while (cursor.hasNext()) {
-                count.incrementAndGet();
-                cursor.next();
-            }
-        } catch (Exception e) {
-            logger.error("获取活跃令牌数量失败", e);
-            return -1;
-        } finally {
-            closeCursorQuietly(cursor);
-        }
-        return count.get();
+        return countUnexpired(ACTIVE_TOKENS_KEY);
     }
 
     /**
      * 获取黑名单中的令牌数量（监控用）
-     * 使用SCAN命令替代keys()，避免阻塞Redis
      * @return 黑名单令牌数量
      */
-    @SuppressWarnings("unused")
     public long getBlacklistedTokenCount() {
-        AtomicLong count = new AtomicLong(0);
-        Cursor<byte[]> cursor = null;
+        return countUnexpired(TokenStateCache.REVOKED_KEY);
+    }
+
+    private long countUnexpired(String key) {
         try {
-            var connectionFactory = stringRedisTemplate.getConnectionFactory();
-            if (connectionFactory == null) {
-                logger.error("Redis连接工厂为空");
-                return -1;
-            }
-            var connection = connectionFactory.getConnection();
-            if (connection == null) {
-                logger.error("Redis连接为空");
-                return -1;
-            }
-            cursor = connection.scan(ScanOptions.scanOptions().match(JWT_BLACKLIST_PREFIX + "*").count(1000).build());
-            while (cursor.hasNext()) {
-                count.incrementAndGet();
-                cursor.next();
-            }
+            Long count = stringRedisTemplate.opsForZSet().count(key, System.currentTimeMillis(), Double.MAX_VALUE);
+            return count != null ? count : 0;
         } catch (Exception e) {
-            logger.error("获取黑名单令牌数量失败", e);
+            logger.error("获取令牌数量失败: key={}", key, e);
             return -1;
-        } finally {
-            closeCursorQuietly(cursor);
         }
-        return count.get();
     }
 
     /**
-     * 安静关闭Redis游标，不抛出异常
-     * @param cursor Redis游标
+     * 清理有效令牌索引中已过期的成员
+     * Why: 令牌状态key由TTL自动过期，索引成员需要定期删除，否则ZSet只增不减
      */
-    @SuppressWarnings("deprecation")
-    private void closeCursorQuietly(Cursor<byte[]> cursor) {
-        if (cursor != null) {
-            try {
-                cursor.close();
-            } catch (Exception e) {
-                logger.error("关闭Redis游标失败", e);
+    @Scheduled(fixedDelayString = "${jwt.active-index-prune-interval:3600000}")
+    public void pruneActiveTokenIndex() {
+        try {
+            Long removed = stringRedisTemplate.opsForZSet().removeRangeByScore(ACTIVE_TOKENS_KEY, 0, System.currentTimeMillis());
+            if (removed != null && removed > 0) {
+                logger.debug("已清理过期令牌索引: {} 条", removed);
             }
+        } catch (Exception e) {
+            logger.error("清理过期令牌索引失败", e);
         }
     }
 }
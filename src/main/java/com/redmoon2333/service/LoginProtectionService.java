@@ -0,0 +1,274 @@
+package com.redmoon2333.service;
+
+import com.redmoon2333.exception.BusinessException;
+import com.redmoon2333.exception.ErrorCode;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 登录防护服务
+ *
+ * 架构说明：
+ * - 密码校验池：BCrypt 校验在独立的有界线程池中执行，队列满时立即拒绝，
+ *   Tomcat 请求线程只等待有限时间
+ * - 尝试节流：按用户名、按IP在 Redis 中统计失败次数（固定窗口）。用户名超限后窗口内直接拒绝，不再做 BCrypt；
+ *   IP超限后仍校验密码（在有界校验池中），密码正确照常登录，错误则返回节流错误
+ * - 透明升级：校验通过且存储的哈希强度低于当前配置时，在同一任务中重新哈希，由调用方写回
+ *
+ * Why: 之前 BCrypt 直接在请求线程上执行，开学季登录高峰或撞库时 CPU 和请求线程被登录占满，
+ *      其它所有接口一起变慢
+ *
+ * Warning: 失败计数以 Redis 为准，Redis 不可用时节流放行（不影响正常登录），只保留线程池的保护
+ */
+@Service
+public class LoginProtectionService {
+    private static final Logger logger = LoggerFactory.getLogger(LoginProtectionService.class);
+
+    private static final String USER_ATTEMPT_PREFIX = "login:fail:user:";
+    private static final String IP_ATTEMPT_PREFIX = "login:fail:ip:";
+
+    /**
+     * 同时递增用户名与IP失败计数，首次递增时设置窗口过期时间
+     * KEYS: 用户名计数key, IP计数key
+     * ARGV: 窗口毫秒数
+     */
+    private static final DefaultRedisScript<Long> RECORD_FAILURE_SCRIPT = new DefaultRedisScript<>(
+            "local count = 0\n" +
+            "for i = 1, #KEYS do\n" +
+            "  local c = redis.call('INCR', KEYS[i])\n" +
+            "  if c == 1 then redis.call('PEXPIRE', KEYS[i], ARGV[1]) end\n" +
+            "  if c > count then count = c end\n" +
+            "end\n" +
+            "return count",
+            Long.class);
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    // 校验线程数，默认为CPU核数的一半，给其它接口留出CPU
+    @Value("${security.login.verify-threads:0}")
+    private int verifyThreads;
+
+    @Value("${security.login.queue-capacity:64}")
+    private int queueCapacity;
+
+    // 请求线程等待校验结果的最长时间（毫秒）
+    @Value("${security.login.verify-timeout:3000}")
+    private long verifyTimeoutMillis;
+
+    @Value("${security.login.max-attempts-per-user:5}")
+    private int maxAttemptsPerUser;
+
+    @Value("${security.login.max-attempts-per-ip:30}")
+    private int maxAttemptsPerIp;
+
+    // 失败计数窗口（毫秒）
+    @Value("${security.login.attempt-window:900000}")
+    private long attemptWindowMillis;
+
+    private ThreadPoolExecutor verifyExecutor;
+
+    private final AtomicLong rejectedCount = new AtomicLong(0);
+    private final AtomicLong throttledCount = new AtomicLong(0);
+    private final AtomicLong rehashCount = new AtomicLong(0);
+
+    @PostConstruct
+    public void init() {
+        int threads = verifyThreads > 0 ? verifyThreads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger threadIndex = new AtomicInteger(0);
+        verifyExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-verify-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        logger.info("登录密码校验池初始化完成: threads={}, queueCapacity={}", threads, queueCapacity);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        verifyExecutor.shutdownNow();
+    }
+
+    /**
+     * 检查用户名与IP是否处于节流中
+     * 用户名超限直接拒绝；IP超限只返回标记，由调用方在密码校验失败时拒绝，
+     * 正确密码仍可登录，避免同一出口IP（校园网NAT、代理）下的所有用户被一起锁定
+     *
+     * @param username 用户名
+     * @param clientIp 客户端IP（可为null）
+     * @return IP失败次数是否已超过上限
+     * @throws BusinessException 用户名失败次数超过上限时抛出
+     */
+    public boolean checkAttemptAllowed(String username, String clientIp) {
+        try {
+            List<String> counts = stringRedisTemplate.opsForValue().multiGet(
+                    Arrays.asList(USER_ATTEMPT_PREFIX + username, ipKey(clientIp)));
+            if (counts == null) {
+                return false;
+            }
+            if (exceeds(counts.get(0), maxAttemptsPerUser)) {
+                throttledCount.incrementAndGet();
+                logger.warn("登录尝试过于频繁，已节流: username={}, ip={}", username, clientIp);
+                throw new BusinessException(ErrorCode.LOGIN_TOO_MANY_ATTEMPTS);
+            }
+            return exceeds(counts.get(1), maxAttemptsPerIp);
+        } catch (BusinessException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.warn("读取登录失败计数失败，跳过节流: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * IP已超限时的失败登录：计数后统一返回节流错误
+     *
+     * @throws BusinessException 总是抛出 LOGIN_TOO_MANY_ATTEMPTS
+     */
+    public void rejectThrottledIp(String username, String clientIp) {
+        recordFailure(username, clientIp);
+        throttledCount.incrementAndGet();
+        logger.warn("IP登录失败次数过多，已节流: username={}, ip={}", username, clientIp);
+        throw new BusinessException(ErrorCode.LOGIN_TOO_MANY_ATTEMPTS);
+    }
+
+    /**
+     * 记录一次登录失败（用户名与IP计数一次往返同时递增）
+     */
+    public void recordFailure(String username, String clientIp) {
+        try {
+            stringRedisTemplate.execute(RECORD_FAILURE_SCRIPT,
+                    Arrays.asList(USER_ATTEMPT_PREFIX + username, ipKey(clientIp)),
+                    String.valueOf(attemptWindowMillis));
+        } catch (Exception e) {
+            logger.warn("记录登录失败计数失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 登录成功后清除该用户名的失败计数（IP计数保留到窗口结束）
+     */
+    public void recordSuccess(String username) {
+        try {
+            stringRedisTemplate.delete(USER_ATTEMPT_PREFIX + username);
+        } catch (Exception e) {
+            logger.warn("清除登录失败计数失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 在校验池中校验密码，需要时同时生成新强度的哈希
+     *
+     * @param rawPassword 明文密码
+     * @param encodedPassword 存储的哈希
+     * @return 校验结果
+     * @throws BusinessException 校验池已满或等待超时时抛出 LOGIN_BUSY
+     */
+    public VerifyResult verifyPassword(String rawPassword, String encodedPassword) {
+        Future<VerifyResult> future;
+        try {
+            future = verifyExecutor.submit(() -> {
+                if (!passwordEncoder.matches(rawPassword, encodedPassword)) {
+                    return new VerifyResult(false, null);
+                }
+                String upgradedHash = passwordEncoder.upgradeEncoding(encodedPassword)
+                        ? passwordEncoder.encode(rawPassword) : null;
+                return new VerifyResult(true, upgradedHash);
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedCount.incrementAndGet();
+            logger.warn("登录密码校验池已满，拒绝本次登录");
+            throw new BusinessException(ErrorCode.LOGIN_BUSY);
+        }
+
+        try {
+            VerifyResult result = future.get(verifyTimeoutMillis, TimeUnit.MILLISECONDS);
+            if (result.upgradedHash() != null) {
+                rehashCount.incrementAndGet();
+            }
+            return result;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejectedCount.incrementAndGet();
+            logger.warn("登录密码校验等待超时（{}ms）", verifyTimeoutMillis);
+            throw new BusinessException(ErrorCode.LOGIN_BUSY);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ErrorCode.LOGIN_BUSY);
+        } catch (ExecutionException e) {
+            logger.error("登录密码校验异常", e.getCause());
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR);
+        }
+    }
+
+    /**
+     * 获取登录防护统计（监控用）
+     */
+    public LoginProtectionStats getStats() {
+        return new LoginProtectionStats(
+                verifyExecutor.getPoolSize(),
+                verifyExecutor.getActiveCount(),
+                verifyExecutor.getQueue().size(),
+                verifyExecutor.getCompletedTaskCount(),
+                rejectedCount.get(),
+                throttledCount.get(),
+                rehashCount.get()
+        );
+    }
+
+    private String ipKey(String clientIp) {
+        return IP_ATTEMPT_PREFIX + (clientIp != null ? clientIp : "unknown");
+    }
+
+    private static boolean exceeds(String count, int limit) {
+        return count != null && Long.parseLong(count) >= limit;
+    }
+
+    /**
+     * 密码校验结果
+     * upgradedHash: 存储的哈希强度低于当前配置时的新哈希，否则为null
+     */
+    public record VerifyResult(boolean matched, String upgradedHash) {}
+
+    /**
+     * 登录防护统计
+     * rejected: 校验池满或等待超时而快速拒绝的次数
+     * throttled: 因失败次数超限而拒绝的次数
+     */
+    public record LoginProtectionStats(
+        int poolSize,
+        int activeVerifications,
+        int queuedVerifications,
+        long completedVerifications,
+        long rejected,
+        long throttled,
+        long rehashed
+    ) {}
+}
@@ -33,13 +33,30 @@ public class PerformanceMonitorService {
     private final AtomicLong ruleBasedCount = new AtomicLong(0);
     private final AtomicLong llmBasedCount = new AtomicLong(0);
     private final AtomicLong llmCacheHitCount = new AtomicLong(0);
+    private final AtomicLong centroidBasedCount = new AtomicLong(0);
+    // 单位：微秒（本地识别在毫秒以下）
     private final AtomicLong totalIntentTime = new AtomicLong(0);
     
+    // 意图闸门指标（仅统计前端请求了RAG或工具的对话）
+    private final AtomicLong intentGateCount = new AtomicLong(0);
+    private final AtomicLong intentGateSkipCount = new AtomicLong(0);
+    
     // 对话性能指标
     private final AtomicLong totalChatCount = new AtomicLong(0);
     private final AtomicLong totalChatTime = new AtomicLong(0);
     private final Map<String, AtomicLong> userChatCounts = new ConcurrentHashMap<>();
     
+    // 策划案缓存指标
+    private final AtomicLong planCacheHitCount = new AtomicLong(0);
+    private final AtomicLong planCacheMissCount = new AtomicLong(0);
+    private final AtomicLong planCacheSavedTime = new AtomicLong(0);
+    
+    // 流式上游取消指标（一个流式增量约等于一个token）
+    private final AtomicLong completedStreamCount = new AtomicLong(0);
+    private final AtomicLong completedStreamTokens = new AtomicLong(0);
+    private final AtomicLong cancelledStreamCount = new AtomicLong(0);
+    private final AtomicLong savedStreamTokens = new AtomicLong(0);
+    
     /**
      * 记录检索操作
      * 
@@ -65,12 +82,12 @@ public class PerformanceMonitorService {
     /**
      * 记录意图识别操作
      * 
-     * @param duration 耗时（毫秒）
-     * @param method 识别方法（rule/llm/llm-cache）
+     * @param durationMicros 耗时（微秒）
+     * @param method 识别方法（rule/centroid/llm/llm-cache）
      */
-    public void recordIntentRecognition(long duration, String method) {
+    public void recordIntentRecognition(long durationMicros, String method) {
         totalIntentRecognitionCount.incrementAndGet();
-        totalIntentTime.addAndGet(duration);
+        totalIntentTime.addAndGet(durationMicros);
         
         switch (method) {
             case "rule":
@@ -82,9 +99,24 @@ public class PerformanceMonitorService {
             case "llm-cache":
                 llmCacheHitCount.incrementAndGet();
                 break;
+            case "centroid":
+                centroidBasedCount.incrementAndGet();
+                break;
         }
         
-        logger.debug("意图识别耗时: {}ms, 方法: {}", duration, method);
+        logger.debug("意图识别耗时: {}μs, 方法: {}", durationMicros, method);
+    }
+    
+    /**
+     * 记录意图闸门结果
+     * 
+     * @param skipped 是否跳过了RAG检索与工具调用
+     */
+    public void recordIntentGate(boolean skipped) {
+        intentGateCount.incrementAndGet();
+        if (skipped) {
+            intentGateSkipCount.incrementAndGet();
+        }
     }
     
     /**
@@ -102,6 +134,46 @@ public class PerformanceMonitorService {
         logger.debug("用户 {} 对话耗时: {}ms", userId, duration);
     }
     
+    /**
+     * 记录策划案缓存查询
+     * 
+     * @param hit 是否命中缓存
+     * @param savedDuration 命中时节省的生成耗时（毫秒）
+     */
+    public void recordPlanCache(boolean hit, long savedDuration) {
+        if (hit) {
+            planCacheHitCount.incrementAndGet();
+            planCacheSavedTime.addAndGet(savedDuration);
+        } else {
+            planCacheMissCount.incrementAndGet();
+        }
+    }
+    
+    /**
+     * 记录上游流正常完成
+     * 
+     * @param tokens 输出的增量数
+     */
+    public void recordStreamCompleted(long tokens) {
+        completedStreamCount.incrementAndGet();
+        completedStreamTokens.addAndGet(tokens);
+    }
+    
+    /**
+     * 记录上游流因客户端断开被取消
+     * Why: 取消后少生成的token数无法精确得知，用已完成流的平均长度减去已输出部分估算
+     * 
+     * @param emittedTokens 取消前已输出的增量数
+     */
+    public void recordStreamCancelled(long emittedTokens) {
+        cancelledStreamCount.incrementAndGet();
+        long completed = completedStreamCount.get();
+        long avgTokens = completed > 0 ? completedStreamTokens.get() / completed : 0;
+        long saved = Math.max(0, avgTokens - emittedTokens);
+        savedStreamTokens.addAndGet(saved);
+        logger.debug("上游流已取消: 已输出 {} 个增量，估算节省 {} 个token", emittedTokens, saved);
+    }
+    
     /**
      * 获取性能统计报告
      */
@@ -119,13 +191,27 @@ public class PerformanceMonitorService {
         report.setRuleBasedRate(calculateRate(ruleBasedCount.get(), totalIntentRecognitionCount.get()));
         report.setLlmBasedRate(calculateRate(llmBasedCount.get(), totalIntentRecognitionCount.get()));
         report.setLlmCacheHitRate(calculateRate(llmCacheHitCount.get(), llmBasedCount.get() + llmCacheHitCount.get()));
-        report.setAvgIntentTime((double) totalIntentTime.get() / Math.max(totalIntentRecognitionCount.get(), 1));
+        report.setCentroidBasedRate(calculateRate(centroidBasedCount.get(), totalIntentRecognitionCount.get()));
+        report.setAvgIntentTime((double) totalIntentTime.get() / 1000 / Math.max(totalIntentRecognitionCount.get(), 1));
+        report.setIntentSkippedRequests(intentGateSkipCount.get());
+        report.setIntentSkipRate(calculateRate(intentGateSkipCount.get(), intentGateCount.get()));
         
         // 对话统计
         report.setTotalChats(totalChatCount.get());
         report.setAvgChatTime((double) totalChatTime.get() / Math.max(totalChatCount.get(), 1));
         report.setActiveUsers(userChatCounts.size());
         
+        // 策划案缓存统计
+        report.setPlanCacheHits(planCacheHitCount.get());
+        report.setPlanCacheHitRate(calculateRate(planCacheHitCount.get(), planCacheHitCount.get() + planCacheMissCount.get()));
+        report.setPlanCacheSavedTime(planCacheSavedTime.get());
+        
+        // 流式取消统计
+        report.setCancelledStreams(cancelledStreamCount.get());
+        report.setCancelledStreamRate(calculateRate(cancelledStreamCount.get(),
+                cancelledStreamCount.get() + completedStreamCount.get()));
+        report.setEstimatedTokensSaved(savedStreamTokens.get());
+        
         return report;
     }
     
@@ -147,12 +233,24 @@ public class PerformanceMonitorService {
         ruleBasedCount.set(0);
         llmBasedCount.set(0);
         llmCacheHitCount.set(0);
+        centroidBasedCount.set(0);
         totalIntentTime.set(0);
+        intentGateCount.set(0);
+        intentGateSkipCount.set(0);
         
         totalChatCount.set(0);
         totalChatTime.set(0);
         userChatCounts.clear();
         
+        planCacheHitCount.set(0);
+        planCacheMissCount.set(0);
+        planCacheSavedTime.set(0);
+        
+        completedStreamCount.set(0);
+        completedStreamTokens.set(0);
+        cancelledStreamCount.set(0);
+        savedStreamTokens.set(0);
+        
         logger.info("性能监控数据已重置");
     }
     
@@ -171,13 +269,26 @@ public class PerformanceMonitorService {
         private double ruleBasedRate;
         private double llmBasedRate;
         private double llmCacheHitRate;
+        private double centroidBasedRate;
         private double avgIntentTime;
+        private long intentSkippedRequests;
+        private double intentSkipRate;
         
         // 对话指标
         private long totalChats;
         private double avgChatTime;
         private int activeUsers;
         
+        // 策划案缓存指标
+        private long planCacheHits;
+        private double planCacheHitRate;
+        private long planCacheSavedTime;
+        
+        // 流式取消指标
+        private long cancelledStreams;
+        private double cancelledStreamRate;
+        private long estimatedTokensSaved;
+        
         // Getters and Setters
         public long getTotalRetrievals() { return totalRetrievals; }
         public void setTotalRetrievals(long totalRetrievals) { this.totalRetrievals = totalRetrievals; }
@@ -195,25 +306,49 @@ public class PerformanceMonitorService {
         public void setLlmBasedRate(double llmBasedRate) { this.llmBasedRate = llmBasedRate; }
         public double getLlmCacheHitRate() { return llmCacheHitRate; }
         public void setLlmCacheHitRate(double llmCacheHitRate) { this.llmCacheHitRate = llmCacheHitRate; }
+        public double getCentroidBasedRate() { return centroidBasedRate; }
+        public void setCentroidBasedRate(double centroidBasedRate) { this.centroidBasedRate = centroidBasedRate; }
         public double getAvgIntentTime() { return avgIntentTime; }
         public void setAvgIntentTime(double avgIntentTime) { this.avgIntentTime = avgIntentTime; }
+        public long getIntentSkippedRequests() { return intentSkippedRequests; }
+        public void setIntentSkippedRequests(long intentSkippedRequests) { this.intentSkippedRequests = intentSkippedRequests; }
+        public double getIntentSkipRate() { return intentSkipRate; }
+        public void setIntentSkipRate(double intentSkipRate) { this.intentSkipRate = intentSkipRate; }
         public long getTotalChats() { return totalChats; }
         public void setTotalChats(long totalChats) { this.totalChats = totalChats; }
         public double getAvgChatTime() { return avgChatTime; }
         public void setAvgChatTime(double avgChatTime) { this.avgChatTime = avgChatTime; }
         public int getActiveUsers() { return activeUsers; }
         public void setActiveUsers(int activeUsers) { this.activeUsers = activeUsers; }
+        public long getPlanCacheHits() { return planCacheHits; }
+        public void setPlanCacheHits(long planCacheHits) { this.planCacheHits = planCacheHits; }
+        public double getPlanCacheHitRate() { return planCacheHitRate; }
+        public void setPlanCacheHitRate(double planCacheHitRate) { this.planCacheHitRate = planCacheHitRate; }
+        public long getPlanCacheSavedTime() { return planCacheSavedTime; }
+        public void setPlanCacheSavedTime(long planCacheSavedTime) { this.planCacheSavedTime = planCacheSavedTime; }
+        public long getCancelledStreams() { return cancelledStreams; }
+        public void setCancelledStreams(long cancelledStreams) { this.cancelledStreams = cancelledStreams; }
+        public double getCancelledStreamRate() { return cancelledStreamRate; }
+        public void setCancelledStreamRate(double cancelledStreamRate) { this.cancelledStreamRate = cancelledStreamRate; }
+        public long getEstimatedTokensSaved() { return estimatedTokensSaved; }
+        public void setEstimatedTokensSaved(long estimatedTokensSaved) { this.estimatedTokensSaved = estimatedTokensSaved; }
         
         @Override
         public String toString() {
             return String.format(
                 "性能报告:\n" +
                 "  检索: 总次数=%d, 缓存命中率=%.2f%%, 平均耗时=%.2fms\n" +
-                "  意图识别: 总次数=%d, 规则匹配=%.2f%%, LLM=%.2f%%, LLM缓存命中率=%.2f%%, 平均耗时=%.2fms\n" +
-                "  对话: 总次数=%d, 平均耗时=%.2fms, 活跃用户=%d",
+                "  意图识别: 总次数=%d, 规则匹配=%.2f%%, 质心=%.2f%%, LLM=%.2f%%, LLM缓存命中率=%.2f%%, 平均耗时=%.3fms\n" +
+                "  意图闸门: 跳过RAG/工具=%d, 跳过率=%.2f%%\n" +
+                "  对话: 总次数=%d, 平均耗时=%.2fms, 活跃用户=%d\n" +
+                "  策划案缓存: 命中=%d, 命中率=%.2f%%, 节省耗时=%dms\n" +
+                "  流式取消: 次数=%d, 取消率=%.2f%%, 估算节省token=%d",
                 totalRetrievals, cacheHitRate, avgRetrievalTime,
-                totalIntentRecognitions, ruleBasedRate, llmBasedRate, llmCacheHitRate, avgIntentTime,
-                totalChats, avgChatTime, activeUsers
+                totalIntentRecognitions, ruleBasedRate, centroidBasedRate, llmBasedRate, llmCacheHitRate, avgIntentTime,
+                intentSkippedRequests, intentSkipRate,
+                totalChats, avgChatTime, activeUsers,
+                planCacheHits, planCacheHitRate, planCacheSavedTime,
+                cancelledStreams, cancelledStreamRate, estimatedTokensSaved
             );
         }
     }
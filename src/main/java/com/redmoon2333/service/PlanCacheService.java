@@ -0,0 +1,151 @@
+package com.redmoon2333.service;
+
+import cn.hutool.crypto.SecureUtil;
+import com.redmoon2333.dto.PlanGeneratorRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 策划案生成结果缓存服务
+ *
+ * Why: 策划案生成是最慢、最贵的模型调用，部长对比方案时经常用完全相同的参数重复生成；
+ *      以"规范化请求参数 + 模型 + 提示词模板版本"为key缓存完整结果，命中时直接返回或按行重放
+ *
+ * Warning: 提示词模板变更后版本号随之变化，旧缓存自然失效，无需手动清理
+ */
+@Service
+public class PlanCacheService {
+    private static final Logger logger = LoggerFactory.getLogger(PlanCacheService.class);
+
+    private static final String KEY_PREFIX = "ai:plan:cache:";
+    private static final String FIELD_CONTENT = "content";
+    private static final String FIELD_DURATION = "durationMs";
+
+    /**
+     * 原子写入内容与过期时间，避免写入后进程退出导致缓存永不过期
+     * KEYS: 缓存key
+     * ARGV: 内容, 生成耗时, 过期毫秒数
+     */
+    private static final DefaultRedisScript<Long> PUT_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('HSET', KEYS[1], '" + FIELD_CONTENT + "', ARGV[1], '" + FIELD_DURATION + "', ARGV[2])\n" +
+            "redis.call('PEXPIRE', KEYS[1], ARGV[3])\n" +
+            "return 1",
+            Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private PerformanceMonitorService performanceMonitorService;
+
+    @Value("${ai.plan.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ai.plan.cache.ttl:24h}")
+    private Duration ttl;
+
+    /**
+     * 构建缓存key
+     *
+     * @param request 策划案请求
+     * @param model 生成所用模型
+     * @param templateVersion 提示词模板版本
+     * @return 缓存key
+     */
+    public String buildKey(PlanGeneratorRequest request, String model, String templateVersion) {
+        // Why: 固定字段顺序并去除首尾空白，避免字段顺序或多余空格导致同一请求无法命中
+        List<Object> fields = List.of(
+                model, templateVersion,
+                normalize(request.getTheme()),
+                normalize(request.getOrganizer()),
+                normalize(request.getEventTime()),
+                normalize(request.getEventLocation()),
+                normalize(request.getStaff()),
+                normalize(request.getParticipants()),
+                normalize(request.getPurpose()),
+                normalize(request.getLeaderCount()),
+                normalize(request.getMemberCount())
+        );
+        StringBuilder canonical = new StringBuilder();
+        for (Object field : fields) {
+            canonical.append(field).append('\u0000');
+        }
+        return KEY_PREFIX + SecureUtil.sha256(canonical.toString());
+    }
+
+    /**
+     * 读取缓存，并记录命中率
+     *
+     * @param key 缓存key
+     * @return 缓存的策划案，未命中返回null
+     */
+    public CachedPlan get(String key) {
+        if (!enabled) {
+            return null;
+        }
+        try {
+            Map<Object, Object> entry = stringRedisTemplate.opsForHash().entries(key);
+            Object content = entry.get(FIELD_CONTENT);
+            if (content == null) {
+                performanceMonitorService.recordPlanCache(false, 0);
+                return null;
+            }
+            long durationMs = parseLong(entry.get(FIELD_DURATION));
+            performanceMonitorService.recordPlanCache(true, durationMs);
+            logger.debug("策划案缓存命中: key={}, 节省约 {}ms", key, durationMs);
+            return new CachedPlan(content.toString(), durationMs);
+        } catch (Exception e) {
+            // Why: 缓存故障不应影响策划案生成，降级为直接调用模型
+            logger.warn("读取策划案缓存失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 写入缓存
+     *
+     * @param key 缓存key
+     * @param content 生成的策划案原文
+     * @param durationMs 生成耗时，用于统计命中后节省的时间
+     */
+    public void put(String key, String content, long durationMs) {
+        if (!enabled || content == null || content.isBlank()) {
+            return;
+        }
+        try {
+            stringRedisTemplate.execute(PUT_SCRIPT, Collections.singletonList(key),
+                    content, String.valueOf(durationMs), String.valueOf(ttl.toMillis()));
+            logger.debug("策划案已缓存: key={}, 长度={}, ttl={}", key, content.length(), ttl);
+        } catch (Exception e) {
+            logger.warn("写入策划案缓存失败: {}", e.getMessage());
+        }
+    }
+
+    private String normalize(Object value) {
+        return value == null ? "" : Objects.toString(value).trim();
+    }
+
+    private long parseLong(Object value) {
+        try {
+            return value != null ? Long.parseLong(value.toString()) : 0L;
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    /**
+     * 缓存的策划案
+     */
+    public record CachedPlan(String content, long durationMs) {}
+}
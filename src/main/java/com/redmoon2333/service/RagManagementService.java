@@ -6,6 +6,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -60,6 +61,10 @@ public class RagManagementService {
     
     @Autowired
     private JedisPooled jedisPooled;
+
+    // 知识库版本号，内容变更时递增
+    // Why: 作为AI请求合并/缓存key的一部分，知识库更新后不会复用旧检索结果生成的回答
+    private final AtomicLong generation = new AtomicLong(0);
     
     /**
      * 初始化向量数据库
@@ -305,6 +310,10 @@ public class RagManagementService {
             response.setDuplicateChunks(duplicateChunks);
             
             updateStats(response);
+
+            if (newChunks > 0) {
+                generation.incrementAndGet();
+            }
             
             // 最终内存状态
             MemoryMonitor.logMemoryStatus();
@@ -475,6 +484,14 @@ public class RagManagementService {
         }
     }
     
+    /**
+     * 获取知识库版本号
+     * @return 当前实例观察到的知识库版本号
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+    
     /**
      * 清空知识库
      * 删除Redis中的所有向量数据和MD5缓存
@@ -491,6 +508,7 @@ public class RagManagementService {
             if (keys != null && !keys.isEmpty()) {
                 stringRedisTemplate.delete(keys);
             }
+            generation.incrementAndGet();
             
             logger.info("知识库已清空");
         } catch (Exception e) {
@@ -16,7 +16,6 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
-import java.util.List;
 
 @Slf4j
 @Service
@@ -25,6 +24,7 @@ public class RoleService {
 
     private final UserMapper userMapper;
     private final RoleChangeLogMapper roleChangeLogMapper;
+    private final UserRoleService userRoleService;
 
     public IPage<User> getUsers(Integer page, Integer pageSize) {
         Page<User> pageParam = new Page<>(page, pageSize);
@@ -53,26 +53,15 @@ public class RoleService {
             throw new BusinessException(ErrorCode.USER_NOT_FOUND);
         }
 
-        LambdaQueryWrapper<User> wrapper = new LambdaQueryWrapper<>();
-        wrapper.isNotNull(User::getRoleHistory).ne(User::getRoleHistory, "");
-        List<User> allUsers = userMapper.selectList(wrapper);
-
-        for (User u : allUsers) {
-            try {
-                RoleHistoryParser.ParsedRole role = RoleHistoryParser.getLatestRole(u);
-                if (role.year() == year && role.role().equals("部长") && !u.getUserId().equals(targetUserId)) {
-                    throw new BusinessException(ErrorCode.ROLE_MINISTER_UNIQUE_VIOLATION);
-                }
-            } catch (BusinessException e) {
-                if (e.getErrorCode() == ErrorCode.ROLE_MINISTER_UNIQUE_VIOLATION) {
-                    throw e;
-                }
-            }
+        // 同届唯一部长：先按唯一索引查询给出提示；并发任命时由 sync 撞唯一键抛出同一错误并回滚
+        if (userRoleService.existsLatestMinister(year, targetUserId)) {
+            throw new BusinessException(ErrorCode.ROLE_MINISTER_UNIQUE_VIOLATION);
         }
 
         String beforeHistory = targetUser.getRoleHistory();
         targetUser.setRoleHistory(RoleHistoryParser.appendRole(targetUser.getRoleHistory(), year, "部长"));
         userMapper.updateById(targetUser);
+        userRoleService.sync(targetUserId, targetUser.getRoleHistory());
 
         RoleChangeLog logEntry = new RoleChangeLog();
         logEntry.setTargetUserId(targetUserId);
@@ -108,6 +97,7 @@ public class RoleService {
         String beforeHistory = targetUser.getRoleHistory();
         targetUser.setRoleHistory(RoleHistoryParser.appendRole(targetUser.getRoleHistory(), year, "副部长"));
         userMapper.updateById(targetUser);
+        userRoleService.sync(targetUserId, targetUser.getRoleHistory());
 
         RoleChangeLog logEntry = new RoleChangeLog();
         logEntry.setTargetUserId(targetUserId);
@@ -159,6 +149,7 @@ public class RoleService {
         String beforeHistory = targetUser.getRoleHistory();
         targetUser.setRoleHistory(RoleHistoryParser.appendRole(targetUser.getRoleHistory(), year, newRole));
         userMapper.updateById(targetUser);
+        userRoleService.sync(targetUserId, targetUser.getRoleHistory());
 
         RoleChangeLog logEntry = new RoleChangeLog();
         logEntry.setTargetUserId(targetUserId);
@@ -10,6 +10,7 @@ import com.redmoon2333.entity.Task;
 import com.redmoon2333.entity.TaskAssignment;
 import com.redmoon2333.entity.TaskRemindLog;
 import com.redmoon2333.entity.User;
+import com.redmoon2333.entity.UserRole;
 import com.redmoon2333.exception.BusinessException;
 import com.redmoon2333.exception.ErrorCode;
 import com.redmoon2333.mapper.TaskAssignmentMapper;
@@ -28,6 +29,7 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -43,6 +45,7 @@ public class TaskService {
     private final TaskRemindLogMapper taskRemindLogMapper;
     private final UserMapper userMapper;
     private final NotifyProducer notifyProducer;
+    private final UserRoleService userRoleService;
 
     @Transactional
     public Task createTask(Integer creatorId, String title, String description,
@@ -379,48 +382,27 @@ public class TaskService {
         RoleHistoryParser.ParsedRole operatorRole = RoleHistoryParser.getLatestRole(operator);
         int currentYear = operatorRole.year();
 
-        // SQL 层预过滤：只查询同届用户的 role_history（包含 "2024级"）
-        // 格式统一为无空格：2024级部员&2025级部长，兼容旧格式带空格
-        List<User> sameYearUsers = userMapper.selectList(
-                new LambdaQueryWrapper<User>()
-                        .isNotNull(User::getRoleHistory)
-                        .ne(User::getRoleHistory, "")
-                        .ne(User::getUserId, operatorId)
-                        .like(User::getRoleHistory, currentYear + "级")
-        );
+        // 按 user_role 的届别索引查询同届身份，不再对 role_history 做 LIKE 全表扫描后逐条解析
+        // 同一用户同届有多条身份时取身份历史中靠前的一条
+        Map<Integer, String> roleByUser = new LinkedHashMap<>();
+        for (UserRole row : userRoleService.findByYear(currentYear)) {
+            if (!row.getUserId().equals(operatorId)) {
+                roleByUser.putIfAbsent(row.getUserId(), row.getRoleName());
+            }
+        }
 
         List<Map<String, Object>> candidates = new ArrayList<>();
-        for (User u : sameYearUsers) {
-            try {
-                List<String> roleEntries = RoleHistoryParser.parseRoleHistory(u.getRoleHistory());
-                RoleHistoryParser.ParsedRole latestRole = null;
-                RoleHistoryParser.ParsedRole currentYearRole = null;
-                for (String entry : roleEntries) {
-                    try {
-                        RoleHistoryParser.ParsedRole parsed = RoleHistoryParser.parseSingleRole(entry);
-                        if (latestRole == null) {
-                            latestRole = parsed;
-                        }
-                        if (parsed.year() == currentYear) {
-                            currentYearRole = parsed;
-                            break;
-                        }
-                    } catch (BusinessException e) {
-                        // skip malformed entries
-                    }
-                }
-                if (currentYearRole != null) {
-                    candidates.add(Map.of(
-                            "userId", u.getUserId(),
-                            "name", u.getName() != null ? u.getName() : "",
-                            "username", u.getUsername(),
-                            "studentId", u.getStudentId() != null ? u.getStudentId() : "",
-                            "currentRole", currentYearRole.role()
-                    ));
-                }
-            } catch (BusinessException e) {
-                // skip users with parse errors
-            }
+        if (roleByUser.isEmpty()) {
+            return candidates;
+        }
+        for (User u : userMapper.findByIds(new ArrayList<>(roleByUser.keySet()))) {
+            candidates.add(Map.of(
+                    "userId", u.getUserId(),
+                    "name", u.getName() != null ? u.getName() : "",
+                    "username", u.getUsername(),
+                    "studentId", u.getStudentId() != null ? u.getStudentId() : "",
+                    "currentRole", roleByUser.get(u.getUserId())
+            ));
         }
         return candidates;
     }
@@ -0,0 +1,334 @@
+package com.redmoon2333.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 令牌状态本地近缓存
+ *
+ * 架构说明：
+ * - 近缓存：最近验证为有效的令牌 digest，短TTL、有容量上限，命中时不访问Redis
+ * - 撤销广播：JwtRedisService 撤销时写入 jwt:revoked（ZSet，score 为过期时间）并发布到 jwt:revocation 频道，
+ *   所有实例收到后立即从近缓存剔除
+ * - 用户令牌代数：强制下线时递增，广播 "gen:{userId}:{代数}"，各实例本地缓存每个用户的当前代数
+ * - 撤销过滤器：已撤销 digest 的布隆过滤器。"一定未撤销"在本地直接回答，
+ *   "可能已撤销"才回Redis确认；定期按 jwt:revoked 重建，剔除已过期的撤销记录，
+ *   也补上连接中断期间错过的广播
+ *
+ * Why: 撤销（登出、强制下线）远少于验证，每个请求一次Redis往返仍是认证的主要开销；
+ *      近缓存命中的请求认证过程不产生任何网络I/O
+ *
+ * Warning: 错过撤销广播的实例最多在 ttl 或一次过滤器重建周期内仍接受被撤销的令牌，
+ *          对安全要求更高时调小 jwt.near-cache.ttl
+ */
+@Service
+public class TokenStateCache implements MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenStateCache.class);
+
+    /**
+     * 撤销广播频道
+     */
+    public static final String REVOCATION_CHANNEL = "jwt:revocation";
+    /**
+     * 用户令牌代数广播的消息前缀，完整格式 gen:{userId}:{代数}
+     */
+    public static final String GENERATION_MESSAGE_PREFIX = "gen:";
+    /**
+     * 撤销记录（ZSet，member 为 digest，score 为撤销记录过期时间）
+     */
+    public static final String REVOKED_KEY = "jwt:revoked";
+
+    // 布隆过滤器哈希函数个数（每个 digest 取4段32位）
+    private static final int HASH_COUNT = 4;
+    private static final int MIN_FILTER_BITS = 1 << 16;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${jwt.near-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${jwt.near-cache.ttl:30000}")
+    private long ttlMillis;
+
+    @Value("${jwt.near-cache.max-size:10000}")
+    private int maxSize;
+
+    // key: digest, value: 缓存过期时间（毫秒时间戳）
+    private final ConcurrentHashMap<String, Long> validTokens = new ConcurrentHashMap<>();
+    private volatile RevocationFilter revocationFilter = new RevocationFilter(MIN_FILTER_BITS);
+    // key: userId, value: 当前令牌代数及缓存过期时间
+    private final ConcurrentHashMap<Integer, CachedGeneration> generations = new ConcurrentHashMap<>();
+    // 重建过滤器期间收到的撤销，重建完成后补入新过滤器
+    private final Set<String> revokedDuringRebuild = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong hitCount = new AtomicLong(0);
+    private final AtomicLong missCount = new AtomicLong(0);
+    private final AtomicLong filterPositiveCount = new AtomicLong(0);
+    private final AtomicLong evictionCount = new AtomicLong(0);
+
+    @PostConstruct
+    public void init() {
+        if (enabled) {
+            rebuildFilter();
+        }
+    }
+
+    /**
+     * 近缓存中是否有未撤销的有效记录
+     * @param digest 令牌digest
+     * @return true 表示可以不访问Redis直接认定有效
+     */
+    public boolean isCachedValid(String digest) {
+        if (!enabled) {
+            return false;
+        }
+        if (mightBeRevoked(digest)) {
+            validTokens.remove(digest);
+            missCount.incrementAndGet();
+            return false;
+        }
+        Long expiresAt = validTokens.get(digest);
+        if (expiresAt != null && expiresAt > System.currentTimeMillis()) {
+            hitCount.incrementAndGet();
+            return true;
+        }
+        if (expiresAt != null) {
+            validTokens.remove(digest, expiresAt);
+        }
+        missCount.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * 是否可能已被撤销（布隆过滤器，无假阴性）
+     * @param digest 令牌digest
+     * @return false 表示一定未被撤销
+     */
+    public boolean mightBeRevoked(String digest) {
+        boolean positive = revocationFilter.mightContain(digest);
+        if (positive) {
+            filterPositiveCount.incrementAndGet();
+        }
+        return positive;
+    }
+
+    /**
+     * 记录Redis确认有效的令牌
+     * Why: 达到容量上限时先清理过期项，仍满则不再缓存，保证内存有界
+     * @param digest 令牌digest
+     */
+    public void cacheValid(String digest) {
+        if (!enabled || mightBeRevoked(digest)) {
+            return;
+        }
+        if (validTokens.size() >= maxSize) {
+            long now = System.currentTimeMillis();
+            validTokens.values().removeIf(expiresAt -> expiresAt <= now);
+            if (validTokens.size() >= maxSize) {
+                return;
+            }
+        }
+        validTokens.put(digest, System.currentTimeMillis() + ttlMillis);
+    }
+
+    /**
+     * 获取本地缓存的用户令牌代数
+     * @param userId 用户ID
+     * @return 代数，未缓存或已过期时返回null
+     */
+    public Long getCachedGeneration(Integer userId) {
+        if (!enabled) {
+            return null;
+        }
+        CachedGeneration cached = generations.get(userId);
+        if (cached != null && cached.expiresAt() > System.currentTimeMillis()) {
+            return cached.generation();
+        }
+        return null;
+    }
+
+    /**
+     * 缓存从Redis读取的用户令牌代数
+     * @param userId 用户ID
+     * @param generation 代数
+     */
+    public void cacheGeneration(Integer userId, long generation) {
+        if (!enabled) {
+            return;
+        }
+        if (generations.size() >= maxSize) {
+            long now = System.currentTimeMillis();
+            generations.values().removeIf(cached -> cached.expiresAt() <= now);
+            if (generations.size() >= maxSize) {
+                return;
+            }
+        }
+        applyGeneration(userId, generation);
+    }
+
+    /**
+     * 在本实例立即生效一次代数递增（只增不减，乱序到达的旧广播不会回退）
+     * @param userId 用户ID
+     * @param generation 新代数
+     */
+    public void applyGeneration(Integer userId, long generation) {
+        long expiresAt = System.currentTimeMillis() + ttlMillis;
+        generations.merge(userId, new CachedGeneration(generation, expiresAt),
+                (old, updated) -> updated.generation() >= old.generation() ? updated
+                        : new CachedGeneration(old.generation(), expiresAt));
+    }
+
+    /**
+     * 接收其他实例（以及本实例）发布的撤销事件
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (body.startsWith(GENERATION_MESSAGE_PREFIX)) {
+            int separator = body.indexOf(':', GENERATION_MESSAGE_PREFIX.length());
+            try {
+                applyGeneration(Integer.valueOf(body.substring(GENERATION_MESSAGE_PREFIX.length(), separator)),
+                        Long.parseLong(body.substring(separator + 1)));
+            } catch (RuntimeException e) {
+                logger.warn("无法解析令牌代数广播: {}", body);
+            }
+            return;
+        }
+        applyRevocation(body);
+    }
+
+    /**
+     * 在本实例立即生效一次撤销（不等待广播回环）
+     * @param digest 令牌digest
+     */
+    public void applyRevocation(String digest) {
+        if (validTokens.remove(digest) != null) {
+            evictionCount.incrementAndGet();
+        }
+        revokedDuringRebuild.add(digest);
+        revocationFilter.put(digest);
+    }
+
+    /**
+     * 按 jwt:revoked 重建撤销过滤器
+     * Why: 布隆过滤器无法删除元素，定期重建以丢弃已过期的撤销记录，避免误判率持续上升
+     */
+    @Scheduled(fixedDelayString = "${jwt.near-cache.filter-rebuild-interval:60000}")
+    public void rebuildFilter() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            revokedDuringRebuild.clear();
+            long now = System.currentTimeMillis();
+            stringRedisTemplate.opsForZSet().removeRangeByScore(REVOKED_KEY, 0, now);
+            Set<String> revoked = stringRedisTemplate.opsForZSet().rangeByScore(REVOKED_KEY, now, Double.MAX_VALUE);
+
+            int count = revoked != null ? revoked.size() : 0;
+            // 每个元素约16位，4个哈希函数下误判率约0.25%
+            RevocationFilter filter = new RevocationFilter(Math.max(MIN_FILTER_BITS, Integer.highestOneBit(count * 16) << 1));
+            if (revoked != null) {
+                revoked.forEach(filter::put);
+            }
+            revocationFilter = filter;
+            revokedDuringRebuild.forEach(filter::put);
+            validTokens.keySet().removeIf(filter::mightContain);
+            logger.debug("令牌撤销过滤器已重建: 撤销记录={}", count);
+        } catch (Exception e) {
+            logger.error("重建令牌撤销过滤器失败", e);
+        }
+    }
+
+    /**
+     * 获取近缓存统计（监控用）
+     */
+    public NearCacheStats getStats() {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return new NearCacheStats(
+                enabled,
+                validTokens.size(),
+                hits,
+                missCount.get(),
+                total > 0 ? Math.round((double) hits / total * 10000) / 100.0 : 0.0,
+                filterPositiveCount.get(),
+                evictionCount.get()
+        );
+    }
+
+    /**
+     * 撤销 digest 的布隆过滤器
+     * digest 本身是 SHA-256 的前缀，直接取其中4段32位作为哈希值
+     */
+    private static final class RevocationFilter {
+        private final AtomicLongArray bits;
+        private final int mask;
+
+        RevocationFilter(int bitCount) {
+            this.bits = new AtomicLongArray(Math.max(1, bitCount >>> 6));
+            this.mask = bitCount - 1;
+        }
+
+        void put(String digest) {
+            for (int i = 0; i < HASH_COUNT; i++) {
+                int index = hash(digest, i) & mask;
+                long bit = 1L << (index & 63);
+                int word = index >>> 6;
+                long current;
+                do {
+                    current = bits.get(word);
+                } while ((current & bit) == 0 && !bits.compareAndSet(word, current, current | bit));
+            }
+        }
+
+        boolean mightContain(String digest) {
+            for (int i = 0; i < HASH_COUNT; i++) {
+                int index = hash(digest, i) & mask;
+                if ((bits.get(index >>> 6) & (1L << (index & 63))) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int hash(String digest, int i) {
+            int start = i * 8;
+            if (digest.length() >= start + 8) {
+                return (int) Long.parseLong(digest, start, start + 8, 16);
+            }
+            return (digest.hashCode() + i) * 0x9E3779B1;
+        }
+    }
+
+    private record CachedGeneration(long generation, long expiresAt) {}
+
+    /**
+     * 近缓存统计
+     * filterPositives: 撤销过滤器判定"可能已撤销"而回Redis确认的次数
+     */
+    public record NearCacheStats(
+        boolean enabled,
+        int size,
+        long hits,
+        long misses,
+        double hitRate,
+        long filterPositives,
+        long evictions
+    ) {}
+}
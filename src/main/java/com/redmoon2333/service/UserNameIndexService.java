@@ -0,0 +1,353 @@
+package com.redmoon2333.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.redmoon2333.dto.PublicUserInfo;
+import com.redmoon2333.entity.User;
+import com.redmoon2333.exception.BusinessException;
+import com.redmoon2333.exception.ErrorCode;
+import com.redmoon2333.mapper.UserMapper;
+import com.redmoon2333.util.PinyinInitials;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 用户姓名内存索引（/api/users/search/name 与 AI 工具的成员搜索）
+ *
+ * 架构说明：
+ * - docs：userId -> 姓名、身份历史、拼音首字母
+ * - nameIndex：完整姓名 -> userId，精确查找
+ * - charIndex / initialIndex：姓名中每个字符、拼音首字母中每个字母 -> userId（单字倒排）
+ * - 子串查找取查询中各字符倒排表的交集（从最短的开始），再用 contains 校验；
+ *   纯字母查询同时按拼音首字母匹配，如 "zs" 可找到"张三"
+ * - 结果排序：完全相同 > 姓名前缀 > 首字母前缀 > 其他子串，最多返回 max-results 条
+ * - 启动时全量构建，之后随 UserRolesSyncedEvent（注册、资料修改、任免，事务提交后）逐个用户更新
+ * - 按客户端IP做固定窗口限流，计数表按 LRU 定长淘汰
+ *
+ * Why: 模糊查找是公开接口，之前直接执行 name LIKE '%x%' 全表扫描，可被用来制造慢查询
+ *
+ * Warning: 限流计数在本实例内存中，多实例部署时每个实例各自计数；
+ *          客户端IP由 ClientIpUtil 解析，反向代理地址不在 security.trusted-proxies 内时所有请求落入同一计数；
+ *          直接改库修改姓名不会同步到索引，需调用 rebuild
+ */
+@Service
+public class UserNameIndexService {
+    private static final Logger logger = LoggerFactory.getLogger(UserNameIndexService.class);
+
+    // 限流表中最多跟踪的IP数，超过后淘汰最久未访问的IP
+    private static final int MAX_TRACKED_IPS = 10000;
+
+    @Value("${search.name.max-results:20}")
+    private int maxResults;
+
+    @Value("${search.name.max-query-length:20}")
+    private int maxQueryLength;
+
+    @Value("${search.name.rate-limit:60}")
+    private int rateLimit;
+
+    @Value("${search.name.rate-window:60000}")
+    private long rateWindowMillis;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    private final Map<Integer, Doc> docs = new ConcurrentHashMap<>();
+    private final Map<String, Set<Integer>> nameIndex = new ConcurrentHashMap<>();
+    private final Map<Character, Set<Integer>> charIndex = new ConcurrentHashMap<>();
+    private final Map<Character, Set<Integer>> initialIndex = new ConcurrentHashMap<>();
+    private final Map<String, RateWindow> rateWindows = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, RateWindow> eldest) {
+            return size() > MAX_TRACKED_IPS;
+        }
+    };
+
+    private volatile boolean ready;
+
+    /**
+     * 启动时全量构建
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            logger.error("构建姓名索引失败，查询将直接访问数据库", e);
+        }
+    }
+
+    /**
+     * 按全部用户重建索引
+     */
+    public synchronized void rebuild() {
+        List<User> users = userMapper.selectList(new LambdaQueryWrapper<User>()
+                .select(User::getUserId, User::getName, User::getRoleHistory));
+        docs.clear();
+        nameIndex.clear();
+        charIndex.clear();
+        initialIndex.clear();
+        for (User user : users) {
+            put(user);
+        }
+        ready = true;
+        logger.info("姓名索引构建完成: {} 个用户", docs.size());
+    }
+
+    /**
+     * 用户注册、资料修改、任免后更新该用户的索引项
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserRolesSynced(UserRoleService.UserRolesSyncedEvent event) {
+        try {
+            User user = userMapper.selectById(event.userId());
+            synchronized (this) {
+                if (user != null) {
+                    put(user);
+                } else {
+                    remove(event.userId());
+                }
+            }
+        } catch (Exception e) {
+            logger.error("更新姓名索引失败: userId={}", event.userId(), e);
+        }
+    }
+
+    /**
+     * 按客户端IP限流
+     *
+     * @param clientIp 客户端IP
+     * @throws BusinessException 窗口内请求数超出上限时抛出 SEARCH_RATE_LIMITED
+     */
+    public void checkRateLimit(String clientIp) {
+        String key = clientIp != null ? clientIp : "unknown";
+        long now = System.currentTimeMillis();
+        int count;
+        synchronized (rateWindows) {
+            RateWindow window = rateWindows.get(key);
+            if (window == null || now - window.start() >= rateWindowMillis) {
+                window = new RateWindow(now);
+                rateWindows.put(key, window);
+            }
+            count = ++window.count;
+        }
+        if (count > rateLimit) {
+            throw new BusinessException(ErrorCode.SEARCH_RATE_LIMITED);
+        }
+    }
+
+    /**
+     * 按姓名精确查找
+     *
+     * @param name 姓名
+     * @return 用户公开信息
+     */
+    public List<PublicUserInfo> findByName(String name) {
+        String query = normalize(name);
+        if (query.isEmpty()) {
+            return List.of();
+        }
+        if (!ready) {
+            return toPublic(userMapper.findByName(query));
+        }
+        Set<Integer> ids = nameIndex.get(query);
+        if (ids == null) {
+            return List.of();
+        }
+        List<PublicUserInfo> result = new ArrayList<>();
+        for (Integer id : ids) {
+            Doc doc = docs.get(id);
+            if (doc != null && doc.name().equals(query)) {
+                result.add(new PublicUserInfo(doc.name(), doc.roleHistory()));
+                if (result.size() >= maxResults) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按姓名子串或拼音首字母查找
+     *
+     * @param keyword 姓名关键词
+     * @return 用户公开信息，按匹配程度排序，最多 max-results 条
+     */
+    public List<PublicUserInfo> search(String keyword) {
+        String query = normalize(keyword);
+        if (query.isEmpty()) {
+            return List.of();
+        }
+        if (!ready) {
+            List<User> users = userMapper.findByNameLike(query);
+            return toPublic(users.size() > maxResults ? users.subList(0, maxResults) : users);
+        }
+        String lowerQuery = query.toLowerCase(Locale.ROOT);
+
+        List<Match> matches = new ArrayList<>();
+        for (Integer id : candidates(charIndex, lowerQuery)) {
+            Doc doc = docs.get(id);
+            if (doc == null || !doc.lowerName().contains(lowerQuery)) {
+                continue;
+            }
+            int rank = doc.lowerName().equals(lowerQuery) ? 0 : doc.lowerName().startsWith(lowerQuery) ? 1 : 3;
+            matches.add(new Match(doc, rank));
+        }
+        if (isLetters(lowerQuery)) {
+            for (Integer id : candidates(initialIndex, lowerQuery)) {
+                Doc doc = docs.get(id);
+                if (doc == null || doc.lowerName().contains(lowerQuery) || !doc.initials().contains(lowerQuery)) {
+                    continue;
+                }
+                matches.add(new Match(doc, doc.initials().startsWith(lowerQuery) ? 2 : 3));
+            }
+        }
+
+        matches.sort(Comparator.comparingInt(Match::rank)
+                .thenComparingInt(m -> m.doc().name().length())
+                .thenComparingInt(m -> m.doc().userId()));
+        List<PublicUserInfo> result = new ArrayList<>(Math.min(matches.size(), maxResults));
+        for (int i = 0; i < matches.size() && i < maxResults; i++) {
+            Doc doc = matches.get(i).doc();
+            result.add(new PublicUserInfo(doc.name(), doc.roleHistory()));
+        }
+        return result;
+    }
+
+    /**
+     * 查询中各字符倒排表的交集，从最短的表开始
+     */
+    private static Set<Integer> candidates(Map<Character, Set<Integer>> index, String query) {
+        Set<Integer> smallest = null;
+        for (int i = 0; i < query.length(); i++) {
+            Set<Integer> ids = index.get(query.charAt(i));
+            if (ids == null) {
+                return Set.of();
+            }
+            if (smallest == null || ids.size() < smallest.size()) {
+                smallest = ids;
+            }
+        }
+        if (smallest == null) {
+            return Set.of();
+        }
+        Set<Integer> result = new HashSet<>();
+        outer:
+        for (Integer id : smallest) {
+            for (int i = 0; i < query.length(); i++) {
+                Set<Integer> ids = index.get(query.charAt(i));
+                if (ids == null || !ids.contains(id)) {
+                    continue outer;
+                }
+            }
+            result.add(id);
+        }
+        return result;
+    }
+
+    /**
+     * 写入或替换用户的索引项（调用方持有锁）
+     * 读取不加锁：倒排表中短暂残留的旧项会在 contains 校验时被过滤
+     */
+    private void put(User user) {
+        remove(user.getUserId());
+        String name = user.getName() != null ? user.getName().trim() : "";
+        if (name.isEmpty()) {
+            return;
+        }
+        Doc doc = new Doc(user.getUserId(), name, name.toLowerCase(Locale.ROOT),
+                PinyinInitials.of(name), user.getRoleHistory());
+        docs.put(doc.userId(), doc);
+        nameIndex.computeIfAbsent(doc.name(), k -> ConcurrentHashMap.newKeySet()).add(doc.userId());
+        addPostings(charIndex, doc.lowerName(), doc.userId());
+        addPostings(initialIndex, doc.initials(), doc.userId());
+    }
+
+    private void remove(Integer userId) {
+        Doc old = docs.remove(userId);
+        if (old == null) {
+            return;
+        }
+        removePosting(nameIndex, old.name(), userId);
+        for (int i = 0; i < old.lowerName().length(); i++) {
+            removePosting(charIndex, old.lowerName().charAt(i), userId);
+        }
+        for (int i = 0; i < old.initials().length(); i++) {
+            removePosting(initialIndex, old.initials().charAt(i), userId);
+        }
+    }
+
+    private static void addPostings(Map<Character, Set<Integer>> index, String text, Integer userId) {
+        for (int i = 0; i < text.length(); i++) {
+            index.computeIfAbsent(text.charAt(i), k -> ConcurrentHashMap.newKeySet()).add(userId);
+        }
+    }
+
+    private static <K> void removePosting(Map<K, Set<Integer>> index, K key, Integer userId) {
+        index.computeIfPresent(key, (k, ids) -> {
+            ids.remove(userId);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    private String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String trimmed = text.trim();
+        if (trimmed.length() > maxQueryLength) {
+            throw new BusinessException(ErrorCode.INVALID_REQUEST_PARAMETER, "姓名关键词过长");
+        }
+        return trimmed;
+    }
+
+    private static boolean isLetters(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 'a' || c > 'z') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<PublicUserInfo> toPublic(List<User> users) {
+        List<PublicUserInfo> result = new ArrayList<>(users.size());
+        for (User user : users) {
+            result.add(new PublicUserInfo(user.getName(), user.getRoleHistory()));
+        }
+        return result;
+    }
+
+    private record Doc(Integer userId, String name, String lowerName, String initials, String roleHistory) {}
+
+    private record Match(Doc doc, int rank) {}
+
+    private static final class RateWindow {
+        private final long start;
+        private int count;
+
+        private RateWindow(long start) {
+            this.start = start;
+        }
+
+        private long start() {
+            return start;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.redmoon2333.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.redmoon2333.entity.User;
+import com.redmoon2333.entity.UserRole;
+import com.redmoon2333.exception.BusinessException;
+import com.redmoon2333.exception.ErrorCode;
+import com.redmoon2333.mapper.UserMapper;
+import com.redmoon2333.mapper.UserRoleMapper;
+import com.redmoon2333.util.RoleHistoryParser;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 用户身份表（user_role）维护与查询
+ *
+ * user.role_history 是自由文本（JSON数组、&/逗号分隔、带或不带空格），按身份查询只能 LIKE 全表扫描；
+ * user_role 把每条身份拆成 (user_id, cohort_year, department, role_level) 一行，按届别、等级走索引
+ *
+ * 同步规则：
+ * - role_history 每次变更（RoleService 任免、AuthService 注册与修改身份历史）后，在同一事务内整体重建该用户的行；
+ *   只改姓名时不重建，仅通过 notifyProfileChanged 发布事件
+ * - 启动时若表为空，按全部用户的 role_history 回填一次
+ * - 每次同步后发布 UserRolesSyncedEvent，依赖身份与姓名的物化数据（如往届部员名录）据此增量更新
+ *
+ * 同届唯一部长由 minister_year 生成列上的唯一索引保证（见 V10），sync 撞键时抛 ROLE_MINISTER_UNIQUE_VIOLATION，
+ * 调用方事务整体回滚，并发任命不会产生两位部长
+ *
+ * Warning: 直接改库修改 role_history 不会触发同步，需调用 rebuildAll 重建
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UserRoleService {
+
+    private final UserRoleMapper userRoleMapper;
+    private final UserMapper userMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * 按最新的身份历史重建用户的身份行
+     * 用户资料（身份历史、姓名）每次变更后调用
+     *
+     * @param userId 用户ID
+     * @param roleHistory 身份历史
+     * @throws BusinessException 同届已有其他现任部长时抛出 ROLE_MINISTER_UNIQUE_VIOLATION
+     */
+    @Transactional
+    public void sync(Integer userId, String roleHistory) {
+        replaceRows(userId, toRows(userId, roleHistory));
+        eventPublisher.publishEvent(new UserRolesSyncedEvent(userId));
+    }
+
+    /**
+     * 身份历史未变、只有姓名等资料变更时调用：不重建身份行，只通知依赖方
+     *
+     * @param userId 用户ID
+     */
+    public void notifyProfileChanged(Integer userId) {
+        eventPublisher.publishEvent(new UserRolesSyncedEvent(userId));
+    }
+
+    /**
+     * 查询某届的全部身份行（按用户、身份历史顺序）
+     *
+     * @param cohortYear 届别
+     * @return 身份行
+     */
+    public List<UserRole> findByYear(int cohortYear) {
+        return userRoleMapper.selectList(new LambdaQueryWrapper<UserRole>()
+                .eq(UserRole::getCohortYear, cohortYear)
+                .orderByAsc(UserRole::getUserId)
+                .orderByAsc(UserRole::getId));
+    }
+
+    /**
+     * 查询某届的现任部长（走 uk_minister_year 唯一索引）
+     *
+     * @param cohortYear 届别
+     * @return 现任部长的用户ID，没有时返回 null
+     */
+    public Integer findCurrentMinister(int cohortYear) {
+        UserRole row = userRoleMapper.selectOne(new LambdaQueryWrapper<UserRole>()
+                .select(UserRole::getUserId)
+                .eq(UserRole::getMinisterYear, cohortYear));
+        return row != null ? row.getUserId() : null;
+    }
+
+    /**
+     * 某届是否已有其他用户以部长为最新身份
+     * 仅用于提前给出友好提示，唯一性最终由数据库约束保证
+     *
+     * @param cohortYear 届别
+     * @param excludeUserId 排除的用户（被任命者本人）
+     */
+    public boolean existsLatestMinister(int cohortYear, Integer excludeUserId) {
+        Integer current = findCurrentMinister(cohortYear);
+        return current != null && !current.equals(excludeUserId);
+    }
+
+    /**
+     * 启动时回填：表为空而用户有身份历史时整体重建
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        try {
+            if (userRoleMapper.selectCount(null) > 0) {
+                return;
+            }
+            int users = rebuildAll();
+            if (users > 0) {
+                log.info("user_role 回填完成: {} 个用户", users);
+            }
+        } catch (Exception e) {
+            log.error("user_role 回填失败", e);
+        }
+    }
+
+    /**
+     * 按全部用户的 role_history 重建身份表
+     * 每个用户在独立事务中重建，失败时保留该用户原有的行，不会留下半套身份
+     *
+     * 历史数据中同届有多位现任部长时，按用户ID只保留最早的一位，
+     * 其余用户的该条部长身份不标记为最新（与 V10 迁移的去重规则一致），需由管理员处理
+     *
+     * @return 处理的用户数
+     */
+    public int rebuildAll() {
+        List<User> users = userMapper.selectList(new LambdaQueryWrapper<User>()
+                .select(User::getUserId, User::getRoleHistory)
+                .isNotNull(User::getRoleHistory)
+                .ne(User::getRoleHistory, "")
+                .orderByAsc(User::getUserId));
+        Set<Integer> ministerYears = new HashSet<>();
+        int count = 0;
+        for (User user : users) {
+            List<UserRole> rows = toRows(user.getUserId(), user.getRoleHistory());
+            for (UserRole row : rows) {
+                if (row.getLatest() && "部长".equals(row.getRoleName()) && !ministerYears.add(row.getCohortYear())) {
+                    row.setLatest(false);
+                    log.warn("{} 届已有现任部长，用户 {} 的部长身份不标记为最新，需管理员处理",
+                            row.getCohortYear(), user.getUserId());
+                }
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> replaceRows(user.getUserId(), rows));
+                count++;
+            } catch (Exception e) {
+                // 多实例同时回填时可能撞唯一键，交给先完成的实例
+                log.warn("重建用户 {} 的身份行失败: {}", user.getUserId(), e.getMessage());
+            }
+        }
+        return count;
+    }
+
+    private void replaceRows(Integer userId, List<UserRole> rows) {
+        userRoleMapper.delete(new LambdaQueryWrapper<UserRole>().eq(UserRole::getUserId, userId));
+        for (UserRole row : rows) {
+            try {
+                userRoleMapper.insert(row);
+            } catch (DuplicateKeyException e) {
+                // toRows 已对 (届别, 身份) 去重，这里只可能是同届已有其他现任部长
+                throw new BusinessException(ErrorCode.ROLE_MINISTER_UNIQUE_VIOLATION);
+            }
+        }
+    }
+
+    /**
+     * 解析身份历史为身份行，格式不符的条目跳过，同一 (届别, 身份) 只保留一行
+     */
+    static List<UserRole> toRows(Integer userId, String roleHistory) {
+        List<UserRole> rows = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (String entry : RoleHistoryParser.parseRoleHistory(roleHistory)) {
+            RoleHistoryParser.ParsedRole parsed;
+            try {
+                parsed = RoleHistoryParser.parseSingleRole(entry);
+            } catch (BusinessException e) {
+                continue;
+            }
+            if (!seen.add(parsed.year() + parsed.role())) {
+                continue;
+            }
+            UserRole row = new UserRole();
+            row.setUserId(userId);
+            row.setCohortYear(parsed.year());
+            row.setRoleName(parsed.role());
+            row.setRoleLevel(levelOf(parsed.role()));
+            row.setDepartment(departmentOf(parsed.role()));
+            row.setLatest(false);
+            rows.add(row);
+        }
+        if (!rows.isEmpty()) {
+            rows.get(rows.size() - 1).setLatest(true);
+        }
+        return rows;
+    }
+
+    /**
+     * 身份名对应的等级
+     * 先匹配副部长，再匹配部长（避免"副部长"被误判为部长）；主任与部长同级
+     */
+    static int levelOf(String roleName) {
+        if (roleName.contains("超级管理员")) {
+            return UserRole.LEVEL_ADMIN;
+        }
+        if (roleName.contains("副部长")) {
+            return UserRole.LEVEL_DEPUTY_MINISTER;
+        }
+        if (roleName.endsWith("部长") || roleName.contains("主任")) {
+            return UserRole.LEVEL_MINISTER;
+        }
+        if (roleName.endsWith("部员")) {
+            return UserRole.LEVEL_MEMBER;
+        }
+        return UserRole.LEVEL_OTHER;
+    }
+
+    /**
+     * 身份名中等级之前的部分，如 "人力资源中心部员" -> "人力资源中心"
+     */
+    static String departmentOf(String roleName) {
+        for (String suffix : new String[]{"副部长", "部长", "部员", "主任"}) {
+            if (roleName.endsWith(suffix)) {
+                return roleName.substring(0, roleName.length() - suffix.length());
+            }
+        }
+        return "";
+    }
+
+    /**
+     * 用户身份行已同步（事务提交后由监听方处理）
+     */
+    public record UserRolesSyncedEvent(Integer userId) {}
+}
@@ -2,7 +2,6 @@ package com.redmoon2333.service;
 
 import com.redmoon2333.dto.ActivationCodeResponse;
 import com.redmoon2333.dto.ActivationCodeStatsResponse;
-import com.redmoon2333.dto.AlumniMember;
 import com.redmoon2333.dto.AlumniResponse;
 import com.redmoon2333.dto.PublicUserInfo;
 import com.redmoon2333.entity.User;
@@ -16,8 +15,6 @@ import org.slf4j.LoggerFactory;
 
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
@@ -41,213 +38,26 @@ public class UserService {
     @Autowired
     private com.redmoon2333.mapper.MessageMapper messageMapper;
     
+    @Autowired
+    private AlumniDirectoryService alumniDirectoryService;
+    
+    @Autowired
+    private UserNameIndexService userNameIndexService;
+    
     /**
      * 获取往届部员信息
      * 从所有用户的roleHistory中提取出任职经历，然后把同一年的人放到一起
      * 同一人有多重身份时，只算作1位成员
+     * 结果由 AlumniDirectoryService 物化维护，这里不再扫描用户表
      * 
      * @return 按年份分组的部员信息列表
      */
     public List<AlumniResponse> getAlumniMembers() {
-        try {
-            logger.info("开始获取往届部员信息");
-            
-            List<User> allUsers = getAllUsers();
-            logger.debug("共获取到 {} 个用户", allUsers.size());
-            
-            if (logger.isDebugEnabled()) {
-                logger.debug("获取到的所有用户信息:");
-                for (User user : allUsers) {
-                    logger.debug("用户ID: {}, 用户名: {}, 角色历史: {}", 
-                        user.getUserId(), user.getUsername(), user.getRoleHistory());
-                }
-            }
-            
-            Map<Integer, List<AlumniMember>> alumniMap = new HashMap<>();
-            Set<String> allUniqueNames = new HashSet<>();
-            
-            Pattern rolePattern = Pattern.compile("(\\d{4})级(.+)");
-            
-            int memberCount = 0;
-            for (User user : allUsers) {
-                String roleHistory = user.getRoleHistory();
-                logger.debug("处理用户 {} 的角色历史: {}", user.getUsername(), roleHistory);
-                
-                if (roleHistory == null || roleHistory.trim().isEmpty()) {
-                    logger.debug("用户 {} 没有角色历史信息", user.getUsername());
-                    continue;
-                }
-                
-                List<String> roleEntries = parseRoleHistory(roleHistory);
-                logger.debug("用户 {} 解析出 {} 个角色条目", user.getUsername(), roleEntries.size());
-                
-                for (String roleEntry : roleEntries) {
-                    roleEntry = roleEntry.trim();
-                    if (roleEntry.isEmpty()) continue;
-                    
-                    logger.debug("处理角色条目: {}", roleEntry);
-                    
-                    Matcher matcher = rolePattern.matcher(roleEntry);
-                    
-                    if (matcher.matches()) {
-                        try {
-                            Integer year = Integer.valueOf(matcher.group(1));
-                            String roleName = matcher.group(2).trim();
-                            
-                            roleName = roleName.replace("[", "").replace("]", "").replace("\"", "").replace("'", "").trim();
-                            
-                            logger.debug("解析出年份: {}, 角色: {}", year, roleName);
-                            
-                            AlumniMember member = new AlumniMember(user.getName(), roleName);
-                            
-                            alumniMap.computeIfAbsent(year, k -> new ArrayList<>()).add(member);
-                            allUniqueNames.add(user.getName());
-                            memberCount++;
-                            
-                            logger.debug("添加部员信息: 用户={}, 年份={}, 角色={}", user.getName(), year, roleName);
-                        } catch (NumberFormatException e) {
-                            logger.warn("解析年份失败，角色信息: {}", roleEntry, e);
-                        } catch (Exception e) {
-                            logger.warn("处理角色信息时发生异常，角色信息: {}", roleEntry, e);
-                        }
-                    } else {
-                        logger.debug("角色信息格式不匹配: {}", roleEntry);
-                    }
-                }
-            }
-            
-            logger.info("共处理 {} 个身份记录，涉及 {} 个年份，唯一成员 {} 人", memberCount, alumniMap.size(), allUniqueNames.size());
-            
-            if (logger.isDebugEnabled()) {
-                logger.debug("年份分组信息:");
-                for (Map.Entry<Integer, List<AlumniMember>> entry : alumniMap.entrySet()) {
-                    logger.debug("年份: {}, 部员数量: {}", entry.getKey(), entry.getValue().size());
-                    for (AlumniMember member : entry.getValue()) {
-                        logger.debug("  部员: {}, 角色: {}", member.getName(), member.getRole());
-                    }
-                }
-            }
-            
-            List<AlumniResponse> result = new ArrayList<>();
-            List<Integer> sortedYears = new ArrayList<>(alumniMap.keySet());
-            Collections.sort(sortedYears, Collections.reverseOrder());
-            
-            for (Integer year : sortedYears) {
-                List<AlumniMember> yearMembers = alumniMap.get(year);
-                Set<String> yearUniqueNames = new HashSet<>();
-                for (AlumniMember m : yearMembers) {
-                    yearUniqueNames.add(m.getName());
-                }
-                AlumniResponse response = new AlumniResponse(year, yearMembers, yearUniqueNames.size());
-                result.add(response);
-            }
-            
-            logger.info("成功生成往届部员信息，共 {} 个年份", result.size());
-            
-            if (logger.isDebugEnabled()) {
-                logger.debug("最终结果:");
-                for (AlumniResponse response : result) {
-                    logger.debug("年份: {}, 身份记录数: {}, 唯一成员数: {}", 
-                        response.getYear(), response.getMembers().size(), response.getUniqueMemberCount());
-                    for (AlumniMember member : response.getMembers()) {
-                        logger.debug("  部员: {}, 角色: {}", member.getName(), member.getRole());
-                    }
-                }
-            }
-            
-            return result;
-            
-        } catch (Exception e) {
-            logger.error("获取往届部员信息时发生异常", e);
-            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "获取往届部员信息失败", e);
-        }
+        return alumniDirectoryService.getAlumni();
     }
     
     /**
-     * 解析角色历史字符串
-     * 读取时兼容旧格式，输出时统一为无空格格式
-     * 支持格式：
-     * - 新格式: 2024级部员&2025级部长
-     * - 旧格式: ["2024级部员"]、2024 级部长、["2024 级部长"]
-     *
-     * @param roleHistory 角色历史字符串
-     * @return 解析后的角色条目列表
-     */
-    private List<String> parseRoleHistory(String roleHistory) {
-        List<String> result = new ArrayList<>();
-        if (roleHistory == null || roleHistory.trim().isEmpty()) {
-            return result;
-        }
-        
-        String cleaned = roleHistory.trim();
-        
-        // 尝试解析JSON数组格式
-        if (cleaned.startsWith("[") && cleaned.endsWith("]")) {
-            try {
-                // 移除外层的方括号
-                cleaned = cleaned.substring(1, cleaned.length() - 1);
-                
-                // 分割JSON数组元素
-                // 处理格式: "2024级部员&2025级部长" 或 "2024级部员","2025级部长"
-                List<String> jsonElements = new ArrayList<>();
-                StringBuilder current = new StringBuilder();
-                boolean inQuotes = false;
-                
-                for (int i = 0; i < cleaned.length(); i++) {
-                    char c = cleaned.charAt(i);
-                    if (c == '"' && (i == 0 || cleaned.charAt(i - 1) != '\\')) {
-                        inQuotes = !inQuotes;
-                    } else if (c == ',' && !inQuotes) {
-                        jsonElements.add(current.toString().trim());
-                        current = new StringBuilder();
-                    } else {
-                        current.append(c);
-                    }
-                }
-                if (current.length() > 0) {
-                    jsonElements.add(current.toString().trim());
-                }
-                
-                // 处理每个JSON元素，移除引号并按 & 分割
-                for (String element : jsonElements) {
-                    element = element.replace("\"", "").replace("'", "").replace(" ", "").trim();
-                    if (element.contains("&")) {
-                        // 格式: 2024级部员&2025级部长
-                        String[] parts = element.split("&");
-                        for (String part : parts) {
-                            part = part.trim().replace(" ", "");
-                            if (!part.isEmpty()) {
-                                result.add(part);
-                            }
-                        }
-                    } else if (!element.isEmpty()) {
-                        result.add(element);
-                    }
-                }
-                
-                return result;
-            } catch (Exception e) {
-                logger.warn("解析JSON数组格式失败，尝试普通格式: {}", roleHistory, e);
-            }
-        }
-        
-        // 普通格式处理
-        cleaned = cleaned.replace("[", "").replace("]", "").replace("\"", "").replace("'", "").replace(" ", "").trim();
-
-        // 按 & 或 , 分割
-        String[] parts = cleaned.split("[&,]");
-        for (String part : parts) {
-            part = part.trim().replace(" ", "");
-            if (!part.isEmpty()) {
-                result.add(part);
-            }
-        }
-        
-        return result;
-    }
-    
-    /**
-     * 根据姓名查找用户
+     * 根据姓名查找用户（走内存姓名索引）
      * 
      * @param name 姓名
      * @return 用户列表
@@ -255,13 +65,11 @@ public class UserService {
     public List<PublicUserInfo> searchUsersByName(String name) {
         try {
             logger.debug("开始根据姓名查找用户: {}", name);
-            List<User> users = userMapper.findByName(name);
-            // 转换为不包含敏感信息的公共用户信息
-            List<PublicUserInfo> publicUsers = users.stream()
-                .map(user -> new PublicUserInfo(user.getName(), user.getRoleHistory()))
-                .collect(Collectors.toList());
+            List<PublicUserInfo> publicUsers = userNameIndexService.findByName(name);
             logger.debug("成功查找到 {} 个用户", publicUsers.size());
             return publicUsers;
+        } catch (BusinessException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("根据姓名查找用户时发生异常", e);
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "查找用户失败", e);
@@ -269,44 +77,25 @@ public class UserService {
     }
 
     /**
-     * 根据姓名模糊查找用户
+     * 根据姓名模糊查找用户（姓名子串或拼音首字母，走内存姓名索引）
      * 
      * @param name 姓名关键词
-     * @return 用户列表
+     * @return 用户列表，按匹配程度排序，条数有上限
      */
     public List<PublicUserInfo> searchUsersByNameLike(String name) {
         try {
             logger.debug("开始根据姓名模糊查找用户: {}", name);
-            List<User> users = userMapper.findByNameLike(name);
-            // 转换为不包含敏感信息的公共用户信息
-            List<PublicUserInfo> publicUsers = users.stream()
-                .map(user -> new PublicUserInfo(user.getName(), user.getRoleHistory()))
-                .collect(Collectors.toList());
+            List<PublicUserInfo> publicUsers = userNameIndexService.search(name);
             logger.debug("成功查找到 {} 个用户", publicUsers.size());
             return publicUsers;
+        } catch (BusinessException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("根据姓名模糊查找用户时发生异常", e);
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "模糊查找用户失败", e);
         }
     }
     
-    /**
-     * 获取所有用户
-     * 
-     * @return 所有用户列表
-     */
-    private List<User> getAllUsers() {
-        try {
-            logger.debug("开始获取所有用户信息");
-            List<User> users = userMapper.selectList(null);
-            logger.debug("成功获取所有用户信息，共 {} 个用户", users.size());
-            return users;
-        } catch (Exception e) {
-            logger.error("获取所有用户信息时发生异常", e);
-            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "获取用户信息失败", e);
-        }
-    }
-    
     /**
      * 调试方法：获取用户总数
      * 
@@ -0,0 +1,535 @@
+package com.redmoon2333.stub;
+
+import cn.hutool.crypto.SecureUtil;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.convert.DurationStyle;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地 OpenAI 兼容模拟服务（压测用）
+ *
+ * 支持的接口（路径前缀任意，与 ChatECNU 的 /open/api 前缀兼容）：
+ * - POST .../v1/chat/completions：流式与非流式，请求带 tools 时先返回一次 tool_calls，收到 tool 结果后返回最终回答
+ * - POST .../v1/embeddings：按输入文本生成确定性的单位向量，相同文本永远得到相同向量
+ *
+ * 可配置首token延迟（TTFT）、生成速度（tokens/s）、注入错误率与向量维度，
+ * 用于在不消耗 ChatECNU 配额的情况下对 AIChatService / RagRetrievalService / RagManagementService 做可重复的吞吐与延迟测试
+ *
+ * 运行方式：
+ * - 进程内：启用 ai-stub profile（见 application-ai-stub.yml 与 AiStubConfig），spring.ai.openai.base-url 自动指向本服务
+ * - 独立进程：java -cp HumanResourceOfficial.jar -Dloader.main=com.redmoon2333.stub.OpenAiStubServer \
+ *             org.springframework.boot.loader.launch.PropertiesLauncher --port=18080 --ttft=300ms --tokens-per-second=40
+ *
+ * Warning: 仅用于本地压测，不做任何鉴权，不要在生产 profile 中启用
+ */
+public class OpenAiStubServer {
+    private static final Logger logger = LoggerFactory.getLogger(OpenAiStubServer.class);
+
+    private static final String CHAT_PATH = "/v1/chat/completions";
+    private static final String EMBEDDINGS_PATH = "/v1/embeddings";
+
+    // 生成回复所用的填充文本，按字符切分作为token
+    private static final String FILLER = "这是本地模拟服务生成的回复内容，用于压测流式输出的吞吐与延迟。";
+
+    private final Options options;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final AtomicLong chatRequests = new AtomicLong(0);
+    private final AtomicLong embeddingRequests = new AtomicLong(0);
+    private final AtomicLong injectedErrors = new AtomicLong(0);
+    private final AtomicLong streamedTokens = new AtomicLong(0);
+    private final AtomicLong cancelledStreams = new AtomicLong(0);
+
+    private DisposableServer server;
+
+    public OpenAiStubServer(Options options) {
+        this.options = options;
+    }
+
+    public synchronized void start() {
+        if (server != null) {
+            return;
+        }
+        server = HttpServer.create()
+                .host(options.host())
+                .port(options.port())
+                .handle(this::handle)
+                .bindNow();
+        logger.info("OpenAI 模拟服务已启动: http://{}:{}, {}", options.host(), server.port(), options);
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.disposeNow(Duration.ofSeconds(5));
+            server = null;
+            logger.info("OpenAI 模拟服务已停止: {}", getStats());
+        }
+    }
+
+    /**
+     * 实际监听端口（port=0 时由系统分配）
+     */
+    public int getPort() {
+        return server != null ? server.port() : options.port();
+    }
+
+    public Stats getStats() {
+        return new Stats(chatRequests.get(), embeddingRequests.get(), injectedErrors.get(),
+                streamedTokens.get(), cancelledStreams.get());
+    }
+
+    private Mono<Void> handle(HttpServerRequest request, HttpServerResponse response) {
+        String uri = request.uri();
+        int queryStart = uri.indexOf('?');
+        String path = queryStart >= 0 ? uri.substring(0, queryStart) : uri;
+
+        if (request.method() != HttpMethod.POST) {
+            return sendJson(response, HttpResponseStatus.METHOD_NOT_ALLOWED, error("only POST is supported", 405));
+        }
+
+        return request.receive().aggregate().asString(StandardCharsets.UTF_8)
+                .defaultIfEmpty("{}")
+                .flatMap(body -> {
+                    JsonNode json;
+                    try {
+                        json = objectMapper.readTree(body);
+                    } catch (Exception e) {
+                        return sendJson(response, HttpResponseStatus.BAD_REQUEST, error("invalid json: " + e.getMessage(), 400));
+                    }
+                    if (path.endsWith(CHAT_PATH)) {
+                        return handleChat(json, response);
+                    }
+                    if (path.endsWith(EMBEDDINGS_PATH)) {
+                        return handleEmbeddings(json, response);
+                    }
+                    return sendJson(response, HttpResponseStatus.NOT_FOUND, error("unknown path: " + path, 404));
+                });
+    }
+
+    // ==================== chat/completions ====================
+
+    private Mono<Void> handleChat(JsonNode request, HttpServerResponse response) {
+        chatRequests.incrementAndGet();
+        if (shouldInjectError()) {
+            return Mono.delay(options.ttft()).then(Mono.defer(() -> sendInjectedError(response)));
+        }
+
+        String model = request.path("model").asText("stub-model");
+        boolean stream = request.path("stream").asBoolean(false);
+        JsonNode messages = request.path("messages");
+        JsonNode tools = request.path("tools");
+
+        int maxTokens = request.path("max_tokens").asInt(options.completionTokens());
+        int tokenCount = Math.max(1, Math.min(options.completionTokens(), maxTokens));
+
+        // Why: 带工具且尚无 tool 结果时先要求调用工具，模拟 ecnu-max 的两轮交互
+        boolean needToolCall = options.toolCalls() && tools.isArray() && tools.size() > 0 && !hasToolResult(messages);
+        String lastUserMessage = lastUserMessage(messages);
+        ObjectNode toolCall = needToolCall ? buildToolCall(tools, lastUserMessage) : null;
+        List<String> tokens = needToolCall ? List.of() : buildTokens(lastUserMessage, hasToolResult(messages), tokenCount);
+        int promptTokens = estimatePromptTokens(messages);
+
+        String id = "chatcmpl-stub-" + chatRequests.get();
+        long created = System.currentTimeMillis() / 1000;
+
+        if (!stream) {
+            Duration generation = tokens.isEmpty() ? Duration.ZERO : tokenInterval().multipliedBy(tokens.size());
+            ObjectNode body = completion(id, created, model, String.join("", tokens), toolCall, promptTokens, tokens.size());
+            return Mono.delay(options.ttft().plus(generation))
+                    .then(Mono.defer(() -> sendJson(response, HttpResponseStatus.OK, body)));
+        }
+
+        boolean includeUsage = request.path("stream_options").path("include_usage").asBoolean(false);
+        Flux<String> frames;
+        if (toolCall != null) {
+            frames = Flux.just(
+                    chunk(id, created, model, toolCallDelta(toolCall), null),
+                    chunk(id, created, model, objectMapper.createObjectNode(), "tool_calls"));
+        } else {
+            Flux<String> first = Flux.just(chunk(id, created, model, contentDelta(tokens.get(0), true), null));
+            Flux<String> rest = Flux.fromIterable(tokens.subList(1, tokens.size()))
+                    .delayElements(tokenInterval())
+                    .map(token -> chunk(id, created, model, contentDelta(token, false), null));
+            frames = Flux.concat(first, rest)
+                    .doOnNext(frame -> streamedTokens.incrementAndGet())
+                    .concatWith(Flux.just(chunk(id, created, model, objectMapper.createObjectNode(), "stop")));
+        }
+        if (includeUsage) {
+            frames = frames.concatWith(Mono.fromSupplier(() -> usageChunk(id, created, model, promptTokens, tokens.size())));
+        }
+
+        Flux<String> sse = frames
+                .delaySubscription(options.ttft())
+                .map(data -> "data: " + data + "\n\n")
+                .concatWith(Mono.just("data: [DONE]\n\n"))
+                .doOnCancel(cancelledStreams::incrementAndGet);
+
+        return response.status(HttpResponseStatus.OK)
+                .header(HttpHeaderNames.CONTENT_TYPE, "text/event-stream;charset=UTF-8")
+                .header(HttpHeaderNames.CACHE_CONTROL, "no-cache")
+                .sendString(sse, StandardCharsets.UTF_8)
+                .then();
+    }
+
+    private ObjectNode completion(String id, long created, String model, String content,
+                                  ObjectNode toolCall, int promptTokens, int completionTokens) {
+        ObjectNode message = objectMapper.createObjectNode();
+        message.put("role", "assistant");
+        if (toolCall != null) {
+            message.putNull("content");
+            message.putArray("tool_calls").add(toolCall);
+        } else {
+            message.put("content", content);
+        }
+
+        ObjectNode choice = objectMapper.createObjectNode();
+        choice.put("index", 0);
+        choice.set("message", message);
+        choice.put("finish_reason", toolCall != null ? "tool_calls" : "stop");
+
+        ObjectNode body = base(id, created, model, "chat.completion");
+        body.putArray("choices").add(choice);
+        body.set("usage", usage(promptTokens, completionTokens));
+        return body;
+    }
+
+    private String chunk(String id, long created, String model, ObjectNode delta, String finishReason) {
+        ObjectNode choice = objectMapper.createObjectNode();
+        choice.put("index", 0);
+        choice.set("delta", delta);
+        if (finishReason != null) {
+            choice.put("finish_reason", finishReason);
+        } else {
+            choice.putNull("finish_reason");
+        }
+        ObjectNode body = base(id, created, model, "chat.completion.chunk");
+        body.putArray("choices").add(choice);
+        return body.toString();
+    }
+
+    private String usageChunk(String id, long created, String model, int promptTokens, int completionTokens) {
+        ObjectNode body = base(id, created, model, "chat.completion.chunk");
+        body.putArray("choices");
+        body.set("usage", usage(promptTokens, completionTokens));
+        return body.toString();
+    }
+
+    private ObjectNode base(String id, long created, String model, String object) {
+        ObjectNode body = objectMapper.createObjectNode();
+        body.put("id", id);
+        body.put("object", object);
+        body.put("created", created);
+        body.put("model", model);
+        return body;
+    }
+
+    private ObjectNode usage(int promptTokens, int completionTokens) {
+        ObjectNode usage = objectMapper.createObjectNode();
+        usage.put("prompt_tokens", promptTokens);
+        usage.put("completion_tokens", completionTokens);
+        usage.put("total_tokens", promptTokens + completionTokens);
+        return usage;
+    }
+
+    private ObjectNode contentDelta(String token, boolean first) {
+        ObjectNode delta = objectMapper.createObjectNode();
+        if (first) {
+            delta.put("role", "assistant");
+        }
+        delta.put("content", token);
+        return delta;
+    }
+
+    private ObjectNode toolCallDelta(ObjectNode toolCall) {
+        ObjectNode call = toolCall.deepCopy();
+        call.put("index", 0);
+        ObjectNode delta = objectMapper.createObjectNode();
+        delta.put("role", "assistant");
+        delta.putArray("tool_calls").add(call);
+        return delta;
+    }
+
+    /**
+     * 按输入确定性地选择一个工具，并根据参数 JSON Schema 生成占位参数
+     */
+    private ObjectNode buildToolCall(JsonNode tools, String seedText) {
+        int index = Math.floorMod(seedText.hashCode(), tools.size());
+        JsonNode function = tools.get(index).path("function");
+
+        ObjectNode arguments = objectMapper.createObjectNode();
+        JsonNode properties = function.path("parameters").path("properties");
+        Iterator<Map.Entry<String, JsonNode>> fields = properties.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            String type = field.getValue().path("type").asText("string");
+            switch (type) {
+                case "integer" -> arguments.put(field.getKey(), 2024);
+                case "number" -> arguments.put(field.getKey(), 1);
+                case "boolean" -> arguments.put(field.getKey(), false);
+                case "array" -> arguments.putArray(field.getKey());
+                case "object" -> arguments.putObject(field.getKey());
+                default -> arguments.put(field.getKey(), seedText.isEmpty() ? "stub" : truncate(seedText, 8));
+            }
+        }
+
+        ObjectNode call = objectMapper.createObjectNode();
+        call.put("id", "call_stub_" + chatRequests.get());
+        call.put("type", "function");
+        ObjectNode fn = call.putObject("function");
+        fn.put("name", function.path("name").asText());
+        fn.put("arguments", arguments.toString());
+        return call;
+    }
+
+    /**
+     * 生成确定性的回复token：回显用户问题前缀 + 填充文本，每个字符一个token
+     */
+    private List<String> buildTokens(String userMessage, boolean afterTool, int count) {
+        String prefix = (afterTool ? "已根据工具结果回答：" : "收到：") + truncate(userMessage, 20) + "。";
+        List<String> tokens = new ArrayList<>(count);
+        int fillerIndex = 0;
+        for (int i = 0; i < count; i++) {
+            if (i < prefix.length()) {
+                tokens.add(String.valueOf(prefix.charAt(i)));
+            } else {
+                tokens.add(String.valueOf(FILLER.charAt(fillerIndex++ % FILLER.length())));
+            }
+        }
+        return tokens;
+    }
+
+    private boolean hasToolResult(JsonNode messages) {
+        for (JsonNode message : messages) {
+            if ("tool".equals(message.path("role").asText())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String lastUserMessage(JsonNode messages) {
+        String last = "";
+        for (JsonNode message : messages) {
+            if ("user".equals(message.path("role").asText())) {
+                last = textOf(message.path("content"));
+            }
+        }
+        return last;
+    }
+
+    private int estimatePromptTokens(JsonNode messages) {
+        int chars = 0;
+        for (JsonNode message : messages) {
+            chars += textOf(message.path("content")).length();
+        }
+        return chars;
+    }
+
+    /**
+     * content 可能是字符串，也可能是 [{type:text, text:...}] 数组
+     */
+    private String textOf(JsonNode content) {
+        if (content.isTextual()) {
+            return content.asText();
+        }
+        if (content.isArray()) {
+            StringBuilder text = new StringBuilder();
+            for (JsonNode part : content) {
+                text.append(part.path("text").asText(""));
+            }
+            return text.toString();
+        }
+        return "";
+    }
+
+    // ==================== embeddings ====================
+
+    private Mono<Void> handleEmbeddings(JsonNode request, HttpServerResponse response) {
+        embeddingRequests.incrementAndGet();
+        if (shouldInjectError()) {
+            return Mono.delay(options.embeddingLatency()).then(Mono.defer(() -> sendInjectedError(response)));
+        }
+
+        List<String> inputs = new ArrayList<>();
+        JsonNode input = request.path("input");
+        if (input.isArray()) {
+            input.forEach(item -> inputs.add(item.asText()));
+        } else {
+            inputs.add(input.asText(""));
+        }
+
+        ObjectNode body = objectMapper.createObjectNode();
+        body.put("object", "list");
+        body.put("model", request.path("model").asText("stub-embedding"));
+        ArrayNode data = body.putArray("data");
+        int promptTokens = 0;
+        for (int i = 0; i < inputs.size(); i++) {
+            ObjectNode item = data.addObject();
+            item.put("object", "embedding");
+            item.put("index", i);
+            ArrayNode vector = item.putArray("embedding");
+            for (float value : deterministicVector(inputs.get(i))) {
+                vector.add(value);
+            }
+            promptTokens += inputs.get(i).length();
+        }
+        body.set("usage", usage(promptTokens, 0));
+
+        return Mono.delay(options.embeddingLatency())
+                .then(sendJson(response, HttpResponseStatus.OK, body));
+    }
+
+    /**
+     * 以文本摘要为随机种子生成单位向量
+     * Why: 相同文本在不同进程、不同次运行中得到完全相同的向量，检索结果可重复
+     */
+    private float[] deterministicVector(String text) {
+        long seed = Long.parseUnsignedLong(SecureUtil.sha256(text).substring(0, 16), 16) ^ options.seed();
+        Random random = new Random(seed);
+        float[] vector = new float[options.embeddingDimensions()];
+        double norm = 0;
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = (float) random.nextGaussian();
+            norm += vector[i] * vector[i];
+        }
+        float scale = norm > 0 ? (float) (1.0 / Math.sqrt(norm)) : 0f;
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+
+    // ==================== 通用 ====================
+
+    private boolean shouldInjectError() {
+        if (options.errorRate() <= 0 || ThreadLocalRandom.current().nextDouble() >= options.errorRate()) {
+            return false;
+        }
+        injectedErrors.incrementAndGet();
+        return true;
+    }
+
+    private Mono<Void> sendInjectedError(HttpServerResponse response) {
+        return sendJson(response, HttpResponseStatus.valueOf(options.errorStatus()),
+                error("stub injected error", options.errorStatus()));
+    }
+
+    private Mono<Void> sendJson(HttpServerResponse response, HttpResponseStatus status, ObjectNode body) {
+        return response.status(status)
+                .header(HttpHeaderNames.CONTENT_TYPE, "application/json;charset=UTF-8")
+                .sendString(Mono.just(body.toString()), StandardCharsets.UTF_8)
+                .then();
+    }
+
+    private ObjectNode error(String message, int code) {
+        ObjectNode body = objectMapper.createObjectNode();
+        ObjectNode error = body.putObject("error");
+        error.put("message", message);
+        error.put("type", code >= 500 ? "server_error" : "invalid_request_error");
+        error.put("code", code);
+        return body;
+    }
+
+    private Duration tokenInterval() {
+        return Duration.ofNanos((long) (1_000_000_000L / Math.max(0.001, options.tokensPerSecond())));
+    }
+
+    private String truncate(String text, int maxLength) {
+        return text.length() > maxLength ? text.substring(0, maxLength) : text;
+    }
+
+    /**
+     * 独立进程入口，参数形如 --port=18080 --ttft=300ms --tokens-per-second=40 --error-rate=0.05
+     */
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> params = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                int eq = arg.indexOf('=');
+                params.put(arg.substring(2, eq), arg.substring(eq + 1));
+            }
+        }
+        Options defaults = Options.defaults();
+        Options options = new Options(
+                params.getOrDefault("host", defaults.host()),
+                Integer.parseInt(params.getOrDefault("port", String.valueOf(defaults.port()))),
+                parseDuration(params.get("ttft"), defaults.ttft()),
+                Double.parseDouble(params.getOrDefault("tokens-per-second", String.valueOf(defaults.tokensPerSecond()))),
+                Integer.parseInt(params.getOrDefault("completion-tokens", String.valueOf(defaults.completionTokens()))),
+                Double.parseDouble(params.getOrDefault("error-rate", String.valueOf(defaults.errorRate()))),
+                Integer.parseInt(params.getOrDefault("error-status", String.valueOf(defaults.errorStatus()))),
+                Integer.parseInt(params.getOrDefault("embedding-dimensions", String.valueOf(defaults.embeddingDimensions()))),
+                parseDuration(params.get("embedding-latency"), defaults.embeddingLatency()),
+                Boolean.parseBoolean(params.getOrDefault("tool-calls", String.valueOf(defaults.toolCalls()))),
+                Long.parseLong(params.getOrDefault("seed", String.valueOf(defaults.seed())))
+        );
+
+        OpenAiStubServer stubServer = new OpenAiStubServer(options);
+        stubServer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(stubServer::stop));
+        stubServer.server.onDispose().block();
+    }
+
+    private static Duration parseDuration(String value, Duration defaultValue) {
+        return value != null ? DurationStyle.detectAndParse(value) : defaultValue;
+    }
+
+    /**
+     * 模拟服务参数
+     * ttft: 首token延迟；tokensPerSecond: 后续token生成速度；errorRate: 注入错误概率（0~1）；
+     * errorStatus: 注入错误时返回的HTTP状态码；embeddingDimensions 需与 rag.embedding-dimensions 一致
+     */
+    public record Options(
+        String host,
+        int port,
+        Duration ttft,
+        double tokensPerSecond,
+        int completionTokens,
+        double errorRate,
+        int errorStatus,
+        int embeddingDimensions,
+        Duration embeddingLatency,
+        boolean toolCalls,
+        long seed
+    ) {
+        public static Options defaults() {
+            return new Options("127.0.0.1", 18080, Duration.ofMillis(300), 40, 200,
+                    0.0, 503, 1024, Duration.ofMillis(20), true, 42L);
+        }
+    }
+
+    /**
+     * 模拟服务统计
+     */
+    public record Stats(
+        long chatRequests,
+        long embeddingRequests,
+        long injectedErrors,
+        long streamedTokens,
+        long cancelledStreams
+    ) {}
+}
@@ -0,0 +1,166 @@
+package com.redmoon2333.util;
+
+import com.redmoon2333.exception.BusinessException;
+import com.redmoon2333.exception.ErrorCode;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * AI上游调用异常分类工具
+ *
+ * 按异常类型（而不是异常消息字符串）判断错误性质：
+ * - 超时 / 429 / 5xx / 连接异常：上游暂时不可用，可重试，计入熔断失败次数
+ * - 其他 4xx：请求本身有问题，重试无意义，不计入熔断
+ * - 客户端断开：用户主动离开，既不重试也不计入熔断
+ *
+ * Why: 之前按消息关键字匹配，"timeout" 之类的字符串会把 4xx 响应体误判为可重试，
+ *      而 WebClientResponseException 的 503 又因消息不含关键字被判为不可重试
+ */
+public final class AiErrorClassifier {
+
+    // Spring AI 默认错误处理器的消息格式: "429 - {...}"
+    private static final Pattern STATUS_PREFIX = Pattern.compile("^\\s*(\\d{3})\\b");
+
+    // 防止异常链出现环
+    private static final int MAX_CAUSE_DEPTH = 10;
+
+    private AiErrorClassifier() {
+    }
+
+    /**
+     * 错误类型
+     * retryable: 是否值得重试；breakerFailure: 是否计入熔断失败；fallbackEligible: 是否可降级到备用模型
+     */
+    public enum ErrorType {
+        TIMEOUT(true, true, true),
+        RATE_LIMITED(true, true, true),
+        SERVER_ERROR(true, true, true),
+        CONNECTION(true, true, true),
+        CIRCUIT_OPEN(false, false, true),
+        CLIENT_ERROR(false, false, false),
+        CLIENT_DISCONNECT(false, false, false),
+        UNKNOWN(false, false, false);
+
+        private final boolean retryable;
+        private final boolean breakerFailure;
+        private final boolean fallbackEligible;
+
+        ErrorType(boolean retryable, boolean breakerFailure, boolean fallbackEligible) {
+            this.retryable = retryable;
+            this.breakerFailure = breakerFailure;
+            this.fallbackEligible = fallbackEligible;
+        }
+
+        public boolean isRetryable() {
+            return retryable;
+        }
+
+        public boolean isBreakerFailure() {
+            return breakerFailure;
+        }
+
+        public boolean isFallbackEligible() {
+            return fallbackEligible;
+        }
+    }
+
+    /**
+     * 沿异常链分类，取第一个能确定类型的异常
+     */
+    public static ErrorType classify(Throwable error) {
+        Throwable current = error;
+        for (int depth = 0; current != null && depth < MAX_CAUSE_DEPTH; depth++) {
+            ErrorType type = classifySingle(current);
+            if (type != null) {
+                return type;
+            }
+            if (current.getCause() == current) {
+                break;
+            }
+            current = current.getCause();
+        }
+        return ErrorType.UNKNOWN;
+    }
+
+    public static boolean isRetryable(Throwable error) {
+        return classify(error).isRetryable();
+    }
+
+    private static ErrorType classifySingle(Throwable error) {
+        if (error instanceof BusinessException be && be.getErrorCode() == ErrorCode.AI_SERVICE_UNAVAILABLE) {
+            return ErrorType.CIRCUIT_OPEN;
+        }
+        // Why: Tomcat 的 ClientAbortException 是 IOException 子类，必须先于连接异常判断
+        String className = error.getClass().getSimpleName();
+        if ("ClientAbortException".equals(className) || "AsyncRequestNotUsableException".equals(className)) {
+            return ErrorType.CLIENT_DISCONNECT;
+        }
+        if (error instanceof WebClientResponseException e) {
+            return fromStatus(e.getStatusCode().value());
+        }
+        if (error instanceof RestClientResponseException e) {
+            return fromStatus(e.getStatusCode().value());
+        }
+        if (error instanceof TransientAiException || error instanceof NonTransientAiException) {
+            Integer status = parseStatus(error.getMessage());
+            if (status != null) {
+                return fromStatus(status);
+            }
+            return error instanceof TransientAiException ? ErrorType.SERVER_ERROR : ErrorType.CLIENT_ERROR;
+        }
+        if (error instanceof TimeoutException
+                || error instanceof SocketTimeoutException
+                || error instanceof io.netty.handler.timeout.TimeoutException) {
+            return ErrorType.TIMEOUT;
+        }
+        // Reactor Netty 连接池等待队列已满 / 等待超时：本地已饱和，按限流处理
+        if ("PoolAcquirePendingLimitException".equals(className) || "PoolAcquireTimeoutException".equals(className)) {
+            return ErrorType.RATE_LIMITED;
+        }
+        if (error instanceof WebClientRequestException
+                || error instanceof ResourceAccessException
+                || error instanceof IOException) {
+            // 继续向下找更具体的原因（如 SocketTimeoutException），找不到时按连接异常处理
+            Throwable cause = error.getCause();
+            if (cause != null && cause != error) {
+                ErrorType nested = classify(cause);
+                if (nested != ErrorType.UNKNOWN) {
+                    return nested;
+                }
+            }
+            return ErrorType.CONNECTION;
+        }
+        return null;
+    }
+
+    private static ErrorType fromStatus(int status) {
+        if (status == 429) {
+            return ErrorType.RATE_LIMITED;
+        }
+        if (status == 408 || status == 504) {
+            return ErrorType.TIMEOUT;
+        }
+        if (status >= 500) {
+            return ErrorType.SERVER_ERROR;
+        }
+        return ErrorType.CLIENT_ERROR;
+    }
+
+    private static Integer parseStatus(String message) {
+        if (message == null) {
+            return null;
+        }
+        Matcher matcher = STATUS_PREFIX.matcher(message);
+        return matcher.find() ? Integer.valueOf(matcher.group(1)) : null;
+    }
+}
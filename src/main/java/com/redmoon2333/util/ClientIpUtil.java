@@ -0,0 +1,154 @@
+package com.redmoon2333.util;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 客户端IP解析工具
+ *
+ * 部署时宿主机 Nginx 反向代理到后端（deploy/nginx/hrofficial.conf），直接取 remoteAddr 只能得到代理地址；
+ * 后端运行在 docker-compose 容器中时，宿主机代理的请求经端口映射到达，remoteAddr 是 Docker 网桥网关（172.x.0.1）。
+ * Nginx 用 $remote_addr 覆盖写入 X-Real-IP，该值不受客户端控制；
+ * X-Forwarded-For 由 $proxy_add_x_forwarded_for 在客户端传入的值后追加，首段可以任意伪造，因此不使用
+ *
+ * 只有 remoteAddr 落在 security.trusted-proxies（CIDR 列表）内时才采信 X-Real-IP，其余请求一律取 remoteAddr。
+ * 默认包含回环地址与 Docker 默认网桥所在的 172.16.0.0/12
+ *
+ * Warning: 代理地址不在 trusted-proxies 内时所有请求都会被识别为代理地址，各项按IP节流会退化为全站共用一个计数；
+ *          trusted-proxies 内的其它主机可以伪造 X-Real-IP，不要放入不受控的网段
+ */
+@Component
+public class ClientIpUtil {
+    private static final Logger logger = LoggerFactory.getLogger(ClientIpUtil.class);
+
+    @Value("${security.trusted-proxies:127.0.0.0/8,::1/128,172.16.0.0/12}")
+    private List<String> trustedProxies;
+
+    private List<Cidr> trustedRanges = List.of();
+
+    @PostConstruct
+    public void init() {
+        List<Cidr> ranges = new ArrayList<>();
+        for (String entry : trustedProxies) {
+            String text = entry.trim();
+            if (text.isEmpty()) {
+                continue;
+            }
+            Cidr cidr = Cidr.parse(text);
+            if (cidr == null) {
+                throw new IllegalArgumentException("security.trusted-proxies 配置无效: " + text);
+            }
+            ranges.add(cidr);
+        }
+        trustedRanges = List.copyOf(ranges);
+        logger.info("可信代理网段: {}", trustedProxies);
+    }
+
+    /**
+     * 获取客户端IP
+     *
+     * @param request 当前请求
+     * @return 客户端IP，无法确定时返回 remoteAddr
+     */
+    public String getClientIp(HttpServletRequest request) {
+        String remoteAddr = request.getRemoteAddr();
+        if (!isTrustedProxy(remoteAddr)) {
+            return remoteAddr;
+        }
+        String realIp = request.getHeader("X-Real-IP");
+        if (realIp != null && !realIp.isBlank()) {
+            return realIp.trim();
+        }
+        return remoteAddr;
+    }
+
+    private boolean isTrustedProxy(String remoteAddr) {
+        byte[] address = literalBytes(remoteAddr);
+        if (address == null) {
+            return false;
+        }
+        for (Cidr cidr : trustedRanges) {
+            if (cidr.contains(address)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 解析IP字面量，非字面量（如主机名）返回null，不做DNS查询
+     */
+    private static byte[] literalBytes(String text) {
+        if (text == null || text.isEmpty()) {
+            return null;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            boolean literalChar = (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F')
+                    || c == '.' || c == ':';
+            if (!literalChar) {
+                return null;
+            }
+        }
+        if (text.indexOf(':') < 0 && !Character.isDigit(text.charAt(text.length() - 1))) {
+            return null;
+        }
+        try {
+            return InetAddress.getByName(text).getAddress();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * CIDR 网段，如 172.16.0.0/12；不带前缀长度时按单个地址处理
+     */
+    private record Cidr(byte[] network, int prefixLength) {
+
+        static Cidr parse(String text) {
+            int slash = text.indexOf('/');
+            byte[] network = literalBytes(slash < 0 ? text : text.substring(0, slash));
+            if (network == null) {
+                return null;
+            }
+            int prefixLength = network.length * 8;
+            if (slash >= 0) {
+                try {
+                    prefixLength = Integer.parseInt(text.substring(slash + 1));
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+                if (prefixLength < 0 || prefixLength > network.length * 8) {
+                    return null;
+                }
+            }
+            return new Cidr(network, prefixLength);
+        }
+
+        boolean contains(byte[] address) {
+            if (address.length != network.length) {
+                return false;
+            }
+            int fullBytes = prefixLength / 8;
+            for (int i = 0; i < fullBytes; i++) {
+                if (address[i] != network[i]) {
+                    return false;
+                }
+            }
+            int remainingBits = prefixLength % 8;
+            if (remainingBits == 0) {
+                return true;
+            }
+            int mask = (0xFF << (8 - remainingBits)) & 0xFF;
+            return (address[fullBytes] & mask) == (network[fullBytes] & mask);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.redmoon2333.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 预编译的提示词模板
+ *
+ * 加载时把模板一次性切分为"静态片段 + 变量槽位"，渲染时只按顺序拼接，不再逐次解析模板。
+ * 变量语法与 Spring AI PromptTemplate 默认分隔符一致：{name}，name 为字母、数字或下划线；
+ * 不符合该形式的大括号按原文保留
+ *
+ * Why: 策划案与RAG模板是大段Markdown，每次请求都交给 PromptTemplate（StringTemplate）重新解析与渲染；
+ *      预编译后渲染只是一次 StringBuilder 拼接
+ *
+ * Warning: 缺失或为null的变量渲染为空字符串，与 StringTemplate 的行为一致
+ */
+public final class CompiledPromptTemplate {
+
+    private final String source;
+    // 偶数下标为静态片段，奇数下标为变量名；静态片段可能为空字符串
+    private final String[] parts;
+    private final Set<String> variables;
+    private final int staticLength;
+
+    private CompiledPromptTemplate(String source, String[] parts, Set<String> variables, int staticLength) {
+        this.source = source;
+        this.parts = parts;
+        this.variables = variables;
+        this.staticLength = staticLength;
+    }
+
+    /**
+     * 编译模板
+     *
+     * @param template 模板原文，null 视为空模板
+     * @return 编译结果
+     */
+    public static CompiledPromptTemplate compile(String template) {
+        String text = template != null ? template : "";
+        List<String> parts = new ArrayList<>();
+        Set<String> variables = new LinkedHashSet<>();
+        StringBuilder literal = new StringBuilder();
+        int staticLength = 0;
+
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c == '{') {
+                int end = text.indexOf('}', i + 1);
+                if (end > i + 1 && isIdentifier(text, i + 1, end)) {
+                    parts.add(literal.toString());
+                    staticLength += literal.length();
+                    literal.setLength(0);
+                    String name = text.substring(i + 1, end);
+                    parts.add(name);
+                    variables.add(name);
+                    i = end + 1;
+                    continue;
+                }
+            }
+            literal.append(c);
+            i++;
+        }
+        parts.add(literal.toString());
+        staticLength += literal.length();
+
+        return new CompiledPromptTemplate(text, parts.toArray(new String[0]),
+                Collections.unmodifiableSet(variables), staticLength);
+    }
+
+    /**
+     * 按变量值渲染
+     *
+     * @param values 变量值
+     * @return 渲染结果
+     */
+    public String render(Map<String, ?> values) {
+        if (parts.length == 1) {
+            return parts[0];
+        }
+        StringBuilder result = new StringBuilder(staticLength + 64 * variables.size());
+        for (int i = 0; i < parts.length; i++) {
+            if ((i & 1) == 0) {
+                result.append(parts[i]);
+            } else {
+                Object value = values != null ? values.get(parts[i]) : null;
+                if (value != null) {
+                    result.append(value);
+                }
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * 模板原文
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * 模板中出现的变量名（按首次出现顺序）
+     */
+    public Set<String> getVariables() {
+        return variables;
+    }
+
+    private static boolean isIdentifier(String text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (!(Character.isLetterOrDigit(c) || c == '_')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
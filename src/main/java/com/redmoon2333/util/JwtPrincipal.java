@@ -0,0 +1,91 @@
+package com.redmoon2333.util;
+
+import io.jsonwebtoken.Claims;
+
+import java.util.List;
+
+/**
+ * 已验证JWT令牌的身份信息（不可变）
+ *
+ * 由 JwtUtil 在验签成功后一次性从声明中提取，过滤器放入请求属性，
+ * 同一请求内的 AuthService 与控制器直接复用，不再重复解析令牌
+ *
+ * @param userId 用户ID
+ * @param username 用户名
+ * @param roleHistory 身份历史（格式：2024级部长&2023级部员）
+ * @param currentRole 当前身份
+ * @param expiresAt 过期时间（毫秒时间戳）
+ * @param generation 签发时用户的令牌代数，低于用户当前代数即视为已被强制下线
+ * @param roleMask 身份等级位掩码（见 RoleAuthorities），签发时预计算
+ * @param cohortYears 届别年份（升序、不可变），签发时预计算
+ */
+public record JwtPrincipal(Integer userId, String username, String roleHistory, String currentRole, long expiresAt,
+                           long generation, int roleMask, List<Integer> cohortYears) {
+
+    /**
+     * 请求属性名
+     */
+    public static final String REQUEST_ATTRIBUTE = "jwtPrincipal";
+
+    /**
+     * 令牌代数声明名
+     */
+    public static final String GENERATION_CLAIM = "gen";
+
+    /**
+     * 从已验签的声明构建
+     */
+    static JwtPrincipal fromClaims(Claims claims) {
+        String roleHistory = claims.get("roleHistory", String.class);
+        // 升级前签发的令牌没有权限声明，按身份历史补算一次
+        RoleAuthorities.RoleClaim roleClaim = claims.get(RoleAuthorities.ROLE_MASK_CLAIM) instanceof Number mask
+                ? new RoleAuthorities.RoleClaim(mask.intValue(),
+                        RoleAuthorities.cohortYearsFromClaim(claims.get(RoleAuthorities.COHORT_YEARS_CLAIM)))
+                : RoleAuthorities.fromRoleHistory(roleHistory);
+        return new JwtPrincipal(
+                claims.get("userId", Integer.class),
+                claims.getSubject(),
+                roleHistory,
+                claims.get("currentRole", String.class),
+                claims.getExpiration() != null ? claims.getExpiration().getTime() : Long.MAX_VALUE,
+                // 升级前签发的令牌没有代数声明，视为第0代
+                claims.get(GENERATION_CLAIM) instanceof Number gen ? gen.longValue() : 0L,
+                roleClaim.roleMask(),
+                roleClaim.cohortYears()
+        );
+    }
+
+    /**
+     * 令牌剩余有效时间（秒），已过期返回0
+     */
+    public long remainingSeconds() {
+        return Math.max(0, (expiresAt - System.currentTimeMillis()) / 1000);
+    }
+
+    /**
+     * 是否具有任一身份等级（位掩码比较，不扫描身份字符串）
+     *
+     * @param roles RoleAuthorities 中的等级位，如 RoleAuthorities.MINISTER_OR_DEPUTY
+     */
+    public boolean hasAnyRole(int roles) {
+        return (roleMask & roles) != 0;
+    }
+
+    /**
+     * 是否具有特定身份
+     *
+     * @param targetRole 目标身份（如："部长"、"部员"）
+     * @return 身份历史中任一身份包含该字样
+     */
+    public boolean hasRole(String targetRole) {
+        if (roleHistory == null || roleHistory.trim().isEmpty()) {
+            return false;
+        }
+        for (String role : roleHistory.split("&")) {
+            if (role.trim().contains(targetRole)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -3,9 +3,12 @@ package com.redmoon2333.util;
 import com.redmoon2333.service.JwtRedisService;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 import javax.crypto.SecretKey;
 import java.util.Date;
@@ -15,10 +18,21 @@ import java.util.Map;
 /**
  * JWT工具类
  * 用于生成、解析和验证JWT令牌
+ *
+ * Why: 签名密钥与解析器在启动时构建一次（JwtParser 不可变、线程安全）；
+ *      每个令牌只验签解析一次，得到的 JwtPrincipal 在同一请求内复用
  */
 @Component
 public class JwtUtil {
 
+    /**
+     * 过滤器验证通过的原始令牌所在的请求属性名（仅供 JwtUtil 比对）
+     */
+    public static final String VERIFIED_TOKEN_ATTRIBUTE = "jwtVerifiedToken";
+
+    // 签发时代数核对不一致的最大重签次数（仅在签发期间用户被反复强制下线时才会用尽）
+    private static final int MAX_ISSUE_ATTEMPTS = 3;
+
     @Autowired
     private JwtRedisService jwtRedisService;
 
@@ -28,11 +42,15 @@ public class JwtUtil {
     @Value("${jwt.expiration}")
     private Long expiration;
 
-    /**
-     * 生成密钥
-     */
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes());
+    private SecretKey signingKey;
+    private JwtParser parser;
+
+    @PostConstruct
+    public void init() {
+        signingKey = Keys.hmacShaKeyFor(secret.getBytes());
+        parser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
     }
 
     /**
@@ -51,13 +69,25 @@ public class JwtUtil {
         // 解析身份历史，提取当前身份
         String currentRole = getCurrentRole(roleHistory);
         claims.put("currentRole", currentRole);
-        
-        String token = createToken(claims, username);
-        
-        // 将令牌存储到Redis
-        jwtRedisService.storeToken(userId, token, username);
-        
-        return token;
+
+        // 身份历史只在签发时解析一次，过滤器直接由位掩码和届别构建权限
+        RoleAuthorities.RoleClaim roleClaim = RoleAuthorities.fromRoleHistory(roleHistory);
+        claims.put(RoleAuthorities.ROLE_MASK_CLAIM, roleClaim.roleMask());
+        claims.put(RoleAuthorities.COHORT_YEARS_CLAIM, roleClaim.cohortYears());
+
+        // 写入用户当前令牌代数，强制下线时代数递增，旧令牌随之失效
+        // Why: 代数先按本地缓存签名，由签发脚本在存储时核对；不一致（本实例未缓存到的强制下线）时按返回值重签
+        long generation = jwtRedisService.getIssueGeneration(userId);
+        for (int attempt = 0; attempt < MAX_ISSUE_ATTEMPTS; attempt++) {
+            claims.put(JwtPrincipal.GENERATION_CLAIM, generation);
+            String token = createToken(claims, username);
+            long current = jwtRedisService.issueToken(userId, token, username, generation);
+            if (current == generation) {
+                return token;
+            }
+            generation = current;
+        }
+        throw new IllegalStateException("签发令牌失败：用户令牌代数持续变化, userId=" + userId);
     }
 
     /**
@@ -75,7 +105,7 @@ public class JwtUtil {
                 .setSubject(subject)
                 .setIssuedAt(now)
                 .setExpiration(expiryDate)
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
@@ -162,46 +192,75 @@ public class JwtUtil {
      * @return 所有声明
      */
     private Claims getAllClaimsFromToken(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return parser.parseClaimsJws(token).getBody();
     }
 
     /**
-     * 检查令牌是否过期
+     * 验签并解析令牌（不查询Redis）
+     * Warning: 过期令牌在 parseClaimsJws 中即抛出 ExpiredJwtException，无需再单独检查过期时间
      * @param token JWT令牌
-     * @return 是否过期
+     * @return 身份信息
+     * @throws JwtException 签名无效、格式错误或已过期
      */
-    private Boolean isTokenExpired(String token) {
-        final Date expiration = getExpirationDateFromToken(token);
-        return expiration.before(new Date());
+    public JwtPrincipal parseToken(String token) {
+        return JwtPrincipal.fromClaims(getAllClaimsFromToken(token));
     }
 
     /**
-     * 验证令牌（集成Redis验证）
+     * 验证令牌并返回身份信息（集成Redis验证）
+     * Why: 先在本地验签，伪造或过期的令牌不会产生Redis请求；同一请求内过滤器已验证过的令牌直接复用结果
      * @param token JWT令牌
-     * @return 是否有效
+     * @return 身份信息，令牌无效时返回null
      */
-    public Boolean validateToken(String token) {
+    public JwtPrincipal authenticate(String token) {
+        JwtPrincipal current = currentRequestPrincipal(token);
+        if (current != null) {
+            return current;
+        }
         try {
-            // 首先检查令牌是否在黑名单中
-            if (jwtRedisService.isTokenBlacklisted(token)) {
-                return false;
+            JwtPrincipal principal = parseToken(token);
+
+            // 一次Redis往返：未撤销且仍在Redis中存在
+            if (jwtRedisService.getTokenState(token) != JwtRedisService.TokenState.VALID) {
+                return null;
             }
-            
-            // 检查令牌是否在Redis中存在
-            if (!jwtRedisService.isTokenValid(token)) {
-                return false;
+
+            // 签发后用户被强制下线过（代数已递增）
+            if (principal.userId() != null
+                    && principal.generation() < jwtRedisService.getCachedUserTokenGeneration(principal.userId())) {
+                return null;
             }
-            
-            // 验证JWT令牌的签名和过期时间
-            getAllClaimsFromToken(token);
-            return !isTokenExpired(token);
+            return principal;
         } catch (JwtException | IllegalArgumentException e) {
-            return false;
+            return null;
+        }
+    }
+
+    /**
+     * 验证令牌（集成Redis验证）
+     * @param token JWT令牌
+     * @return 是否有效
+     */
+    public Boolean validateToken(String token) {
+        return authenticate(token) != null;
+    }
+
+    /**
+     * 获取当前请求中过滤器已验证的身份信息
+     * @param token JWT令牌，只有与过滤器验证的是同一令牌时才返回
+     * @return 身份信息，不在请求上下文中或令牌不同时返回null
+     */
+    private JwtPrincipal currentRequestPrincipal(String token) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null || token == null) {
+            return null;
         }
+        Object verifiedToken = attributes.getAttribute(VERIFIED_TOKEN_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        Object principal = attributes.getAttribute(JwtPrincipal.REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (token.equals(verifiedToken) && principal instanceof JwtPrincipal jwtPrincipal) {
+            return jwtPrincipal;
+        }
+        return null;
     }
 
     /**
@@ -236,18 +295,8 @@ public class JwtUtil {
      */
     public Boolean hasRole(String token, String targetRole) {
         try {
-            String roleHistory = getRoleHistoryFromToken(token);
-            if (roleHistory == null || roleHistory.trim().isEmpty()) {
-                return false;
-            }
-            
-            String[] roles = roleHistory.split("&");
-            for (String role : roles) {
-                if (role.trim().contains(targetRole)) {
-                    return true;
-                }
-            }
-            return false;
+            JwtPrincipal principal = currentRequestPrincipal(token);
+            return (principal != null ? principal : parseToken(token)).hasRole(targetRole);
         } catch (Exception e) {
             return false;
         }
@@ -260,8 +309,8 @@ public class JwtUtil {
     public void logout(String token) {
         try {
             // 获取令牌剩余有效时间
-            Date expiration = getExpirationDateFromToken(token);
-            long remainingTime = (expiration.getTime() - System.currentTimeMillis()) / 1000;
+            JwtPrincipal principal = currentRequestPrincipal(token);
+            long remainingTime = (principal != null ? principal : parseToken(token)).remainingSeconds();
             
             if (remainingTime > 0) {
                 // 将令牌加入黑名单
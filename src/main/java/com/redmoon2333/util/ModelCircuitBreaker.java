@@ -0,0 +1,133 @@
+package com.redmoon2333.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 单个模型的熔断器
+ *
+ * 状态流转：
+ * - CLOSED：正常放行，连续失败达到阈值后进入 OPEN
+ * - OPEN：直接拒绝，经过 openDuration 后进入 HALF_OPEN
+ * - HALF_OPEN：只放行一个探测请求，成功则 CLOSED，失败则重新 OPEN
+ *
+ * Why: 上游降级时，继续把每个用户请求都送过去只会排队等待超时，
+ *      熔断后快速失败（或降级到备用模型），给上游恢复的时间
+ *
+ * Warning: 只有 AiErrorClassifier 判定为 breakerFailure 的错误才计入失败，
+ *          4xx 和客户端断开不会触发熔断
+ */
+public class ModelCircuitBreaker {
+    private static final Logger logger = LoggerFactory.getLogger(ModelCircuitBreaker.class);
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String model;
+    private final int failureThreshold;
+    private final long openDurationMs;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger(0);
+    private final AtomicLong openedAt = new AtomicLong(0);
+    // HALF_OPEN 时是否已有探测请求在进行
+    private final AtomicBoolean probeInFlight = new AtomicBoolean(false);
+
+    private final AtomicLong rejectedCount = new AtomicLong(0);
+    private final AtomicLong openCount = new AtomicLong(0);
+
+    public ModelCircuitBreaker(String model, int failureThreshold, Duration openDuration) {
+        this.model = model;
+        this.failureThreshold = failureThreshold;
+        this.openDurationMs = openDuration.toMillis();
+    }
+
+    /**
+     * 申请一次调用许可
+     *
+     * @return false 表示熔断中，调用方应快速失败
+     */
+    public boolean tryAcquire() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return true;
+        }
+        if (current == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt.get() < openDurationMs) {
+                rejectedCount.incrementAndGet();
+                return false;
+            }
+            if (state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+                logger.info("模型 {} 熔断冷却结束，进入半开状态", model);
+            }
+        }
+        if (probeInFlight.compareAndSet(false, true)) {
+            return true;
+        }
+        rejectedCount.incrementAndGet();
+        return false;
+    }
+
+    public void onSuccess() {
+        consecutiveFailures.set(0);
+        probeInFlight.set(false);
+        if (state.getAndSet(State.CLOSED) != State.CLOSED) {
+            logger.info("模型 {} 探测成功，熔断关闭", model);
+        }
+    }
+
+    /**
+     * 记录一次失败
+     *
+     * @param type 错误分类，非 breakerFailure 类型只释放探测许可
+     */
+    public void onError(AiErrorClassifier.ErrorType type) {
+        if (!type.isBreakerFailure()) {
+            probeInFlight.set(false);
+            return;
+        }
+        int failures = consecutiveFailures.incrementAndGet();
+        State current = state.get();
+        if (current == State.HALF_OPEN || (current == State.CLOSED && failures >= failureThreshold)) {
+            open(failures, type);
+        }
+        probeInFlight.set(false);
+    }
+
+    /**
+     * 调用被取消（如客户端断开）时释放探测许可，避免半开状态永久卡住
+     */
+    public void onCancel() {
+        probeInFlight.set(false);
+    }
+
+    private void open(int failures, AiErrorClassifier.ErrorType type) {
+        openedAt.set(System.currentTimeMillis());
+        if (state.getAndSet(State.OPEN) != State.OPEN) {
+            openCount.incrementAndGet();
+            logger.warn("模型 {} 熔断打开: 连续失败 {} 次，最近错误类型 {}，{}ms 后尝试恢复",
+                    model, failures, type, openDurationMs);
+        }
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public long getOpenCount() {
+        return openCount.get();
+    }
+}
@@ -11,6 +11,14 @@ import org.springframework.web.context.request.ServletRequestAttributes;
 
 /**
  * 权限验证工具类
+ *
+ * 身份等级以位掩码表示（见 RoleAuthorities）：
+ * - 已认证请求直接使用 JwtPrincipal 中签发时预计算的位掩码
+ * - 只有身份历史字符串时，经 RoleHistoryParser 解析（其LRU缓存按字符串复用解析结果）
+ * 权限检查本身只是一次位运算
+ *
+ * Why: 之前每次检查都要 trim、去括号引号并正则切分身份历史，一个请求内可能检查多次；
+ *      检查通过还打 INFO 日志，热点接口上日志I/O比检查本身还贵
  */
 @Component
 public class PermissionUtil {
@@ -22,26 +30,7 @@ public class PermissionUtil {
      * @throws BusinessException 如果权限不足
      */
     public void checkMinisterPermission() {
-        HttpServletRequest request = getCurrentRequest();
-        String roleHistory = (String) request.getAttribute("roleHistory");
-        String username = (String) request.getAttribute("username");
-        
-        logger.debug("检查用户 {} 的部长权限，身份历史: {}", username, roleHistory);
-        
-        if (roleHistory == null || roleHistory.trim().isEmpty()) {
-            logger.warn("用户 {} 没有身份信息，拒绝访问", username);
-            throw new BusinessException(ErrorCode.UNAUTHORIZED_ACTIVITY_OPERATION);
-        }
-        
-        // 检查是否包含部长或副部长身份
-        boolean hasMinisterRole = hasMinisterRole(roleHistory);
-        
-        if (!hasMinisterRole) {
-            logger.warn("用户 {} 权限不足，当前身份: {}，尝试执行需要部长权限的操作", username, roleHistory);
-            throw new BusinessException(ErrorCode.UNAUTHORIZED_ACTIVITY_OPERATION);
-        }
-        
-        logger.info("用户 {} 权限验证通过，身份: {}", username, roleHistory);
+        checkPermission(RoleAuthorities.MINISTER_OR_DEPUTY, ErrorCode.UNAUTHORIZED_ACTIVITY_OPERATION, "部长");
     }
     
     /**
@@ -49,26 +38,25 @@ public class PermissionUtil {
      * @throws BusinessException 如果权限不足
      */
     public void checkMemberPermission() {
+        checkPermission(RoleAuthorities.MEMBER_OR_ABOVE, ErrorCode.INSUFFICIENT_PERMISSIONS, "部员");
+    }
+
+    private void checkPermission(int requiredRoles, ErrorCode deniedCode, String requiredName) {
         HttpServletRequest request = getCurrentRequest();
-        String roleHistory = (String) request.getAttribute("roleHistory");
         String username = (String) request.getAttribute("username");
-        
-        logger.debug("检查用户 {} 的部员权限，身份历史: {}", username, roleHistory);
-        
-        if (roleHistory == null || roleHistory.trim().isEmpty()) {
-            logger.warn("用户 {} 没有身份信息，拒绝访问", username);
-            throw new BusinessException(ErrorCode.INSUFFICIENT_PERMISSIONS);
-        }
-        
-        // 检查是否包含部员及以上身份
-        boolean hasMemberRole = hasMemberRole(roleHistory);
-        
-        if (!hasMemberRole) {
-            logger.warn("用户 {} 权限不足，当前身份: {}，尝试执行需要部员权限的操作", username, roleHistory);
-            throw new BusinessException(ErrorCode.INSUFFICIENT_PERMISSIONS);
+        int roleMask = currentRoleMask(request);
+
+        if ((roleMask & requiredRoles) == 0) {
+            String roleHistory = (String) request.getAttribute("roleHistory");
+            if (roleHistory == null || roleHistory.trim().isEmpty()) {
+                logger.warn("用户 {} 没有身份信息，拒绝访问", username);
+            } else {
+                logger.warn("用户 {} 权限不足，当前身份: {}，尝试执行需要{}权限的操作", username, roleHistory, requiredName);
+            }
+            throw new BusinessException(deniedCode);
         }
-        
-        logger.info("用户 {} 权限验证通过，身份: {}", username, roleHistory);
+
+        logger.debug("用户 {} {}权限验证通过", username, requiredName);
     }
     
     /**
@@ -78,53 +66,27 @@ public class PermissionUtil {
      * @return 是否具有部长权限
      */
     public boolean hasMinisterRole(String roleHistory) {
-        if (roleHistory == null || roleHistory.trim().isEmpty()) {
-            return false;
-        }
-
-        String cleaned = roleHistory.trim();
-        if (cleaned.startsWith("[") && cleaned.endsWith("]")) {
-            cleaned = cleaned.substring(1, cleaned.length() - 1);
-        }
-        cleaned = cleaned.replace("\"", "").replace("'", "").replace(" ", "").trim();
-
-        String[] roles = cleaned.split("[&,]");
-        for (String role : roles) {
-            role = role.trim();
-            if (role.isEmpty()) continue;
-            if (role.contains("副部长") || role.endsWith("部长")) {
-                return true;
-            }
-        }
-        return false;
+        return (roleMaskOf(roleHistory) & RoleAuthorities.MINISTER_OR_DEPUTY) != 0;
     }
 
     /**
-     * 检查身份历史中是否包含部员及以上身份
-     * 读取时兼容旧格式，自动去除空格
-     * @param roleHistory 身份历史
-     * @return 是否具有部员权限
+     * 当前请求用户的身份等级位掩码
      */
-    private boolean hasMemberRole(String roleHistory) {
-        if (roleHistory == null || roleHistory.trim().isEmpty()) {
-            return false;
+    private int currentRoleMask(HttpServletRequest request) {
+        if (request.getAttribute(JwtPrincipal.REQUEST_ATTRIBUTE) instanceof JwtPrincipal principal) {
+            return principal.roleMask();
         }
+        return roleMaskOf((String) request.getAttribute("roleHistory"));
+    }
 
-        String cleaned = roleHistory.trim();
-        if (cleaned.startsWith("[") && cleaned.endsWith("]")) {
-            cleaned = cleaned.substring(1, cleaned.length() - 1);
-        }
-        cleaned = cleaned.replace("\"", "").replace("'", "").replace(" ", "").trim();
-
-        String[] roles = cleaned.split("[&,]");
-        for (String role : roles) {
-            role = role.trim();
-            if (role.isEmpty()) continue;
-            if (role.endsWith("部员") || role.contains("副部长") || role.endsWith("部长")) {
-                return true;
-            }
+    /**
+     * 身份历史对应的位掩码
+     */
+    private int roleMaskOf(String roleHistory) {
+        if (roleHistory == null || roleHistory.isBlank()) {
+            return 0;
         }
-        return false;
+        return RoleAuthorities.fromRoleHistory(roleHistory).roleMask();
     }
     
     /**
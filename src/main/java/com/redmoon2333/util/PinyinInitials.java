@@ -0,0 +1,83 @@
+package com.redmoon2333.util;
+
+import java.nio.charset.Charset;
+
+/**
+ * 汉字拼音首字母
+ *
+ * 按 GB2312 一级汉字（按拼音排序，覆盖常用字 3755 个）的编码区间取首字母，不依赖拼音库
+ * 英文字母、数字原样转小写保留，二级汉字及其他字符跳过
+ *
+ * Warning: 多音字只取 GB2312 排序所用的读音（如"单"为 d），姓名中的生僻字没有首字母
+ */
+public final class PinyinInitials {
+
+    private static final Charset GB2312 = loadGb2312();
+
+    // 各首字母在 GB2312 一级汉字中的起始编码（i、u、v 不作为声母开头）
+    private static final int[] BOUNDS = {
+            0xB0A1, 0xB0C5, 0xB2C1, 0xB4EE, 0xB6EA, 0xB7A2, 0xB8C1, 0xB9FE, 0xBBF7,
+            0xBFA6, 0xC0AC, 0xC2E8, 0xC4C3, 0xC5B6, 0xC5BE, 0xC6DA, 0xC8BB, 0xC8F6,
+            0xCBFA, 0xCDDA, 0xCEF4, 0xD1B9, 0xD4D1
+    };
+    private static final char[] LETTERS = "abcdefghjklmnopqrstwxyz".toCharArray();
+    private static final int LEVEL1_END = 0xD7F9;
+
+    private PinyinInitials() {
+    }
+
+    /**
+     * 取字符串的拼音首字母，如 "张三" -> "zs"
+     *
+     * @param text 文本
+     * @return 小写首字母串，无法识别的字符跳过
+     */
+    public static String of(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        StringBuilder initials = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                if (Character.isLetterOrDigit(c)) {
+                    initials.append(Character.toLowerCase(c));
+                }
+                continue;
+            }
+            char initial = initialOf(c);
+            if (initial != 0) {
+                initials.append(initial);
+            }
+        }
+        return initials.toString();
+    }
+
+    private static char initialOf(char c) {
+        if (GB2312 == null) {
+            return 0;
+        }
+        byte[] bytes = String.valueOf(c).getBytes(GB2312);
+        if (bytes.length != 2) {
+            return 0;
+        }
+        int code = ((bytes[0] & 0xFF) << 8) | (bytes[1] & 0xFF);
+        if (code < BOUNDS[0] || code > LEVEL1_END) {
+            return 0;
+        }
+        for (int i = BOUNDS.length - 1; i >= 0; i--) {
+            if (code >= BOUNDS[i]) {
+                return LETTERS[i];
+            }
+        }
+        return 0;
+    }
+
+    private static Charset loadGb2312() {
+        try {
+            return Charset.forName("GB2312");
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.redmoon2333.util;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 身份历史到权限的预计算
+ *
+ * 登录签发令牌时用 RoleHistoryParser 解析一次身份历史，得到紧凑的权限声明：
+ * - 身份等级位掩码：部员 / 副部长 / 部长
+ * - 届别年份列表（升序去重）
+ * 过滤器直接由声明构建 Spring 权限，不再逐请求扫描身份字符串
+ *
+ * Why: 之前过滤器每个请求都按 & 切分身份历史并做子串匹配，不识别 RoleHistoryParser 支持的
+ *      JSON数组与逗号格式，且届别权限写死为 2021~2024 级，2025 级起拿不到届别权限
+ */
+public final class RoleAuthorities {
+
+    /** 部员 */
+    public static final int MEMBER = 1;
+    /** 副部长 */
+    public static final int DEPUTY_MINISTER = 1 << 1;
+    /** 部长 */
+    public static final int MINISTER = 1 << 2;
+    /** 部长或副部长 */
+    public static final int MINISTER_OR_DEPUTY = MINISTER | DEPUTY_MINISTER;
+    /** 部员及以上 */
+    public static final int MEMBER_OR_ABOVE = MEMBER | MINISTER_OR_DEPUTY;
+
+    /** 身份等级位掩码声明名 */
+    public static final String ROLE_MASK_CLAIM = "rm";
+    /** 届别年份声明名 */
+    public static final String COHORT_YEARS_CLAIM = "cy";
+
+    private static final SimpleGrantedAuthority ROLE_USER = new SimpleGrantedAuthority("ROLE_USER");
+    private static final SimpleGrantedAuthority ROLE_MEMBER = new SimpleGrantedAuthority("ROLE_MEMBER");
+    private static final SimpleGrantedAuthority ROLE_MINISTER = new SimpleGrantedAuthority("ROLE_MINISTER");
+    // 届别权限对象按年份复用，年份数量很少
+    private static final ConcurrentHashMap<Integer, SimpleGrantedAuthority> COHORT_AUTHORITIES = new ConcurrentHashMap<>();
+
+    private RoleAuthorities() {
+    }
+
+    /**
+     * 解析身份历史
+     *
+     * @param roleHistory 身份历史（兼容 RoleHistoryParser 支持的所有格式）
+     * @return 权限声明
+     */
+    public static RoleClaim fromRoleHistory(String roleHistory) {
+        int mask = 0;
+        TreeSet<Integer> years = new TreeSet<>();
+        for (String entry : RoleHistoryParser.parseRoleHistory(roleHistory)) {
+            // 先匹配副部长，再匹配部长（避免"副部长"被误判为部长）
+            if (entry.contains("副部长")) {
+                mask |= DEPUTY_MINISTER;
+            } else if (entry.endsWith("部长")) {
+                mask |= MINISTER;
+            }
+            if (entry.endsWith("部员")) {
+                mask |= MEMBER;
+            }
+            int year = cohortYear(entry);
+            if (year > 0) {
+                years.add(year);
+            }
+        }
+        return new RoleClaim(mask, List.copyOf(years));
+    }
+
+    /**
+     * 由权限声明构建 Spring 权限列表
+     *
+     * @param roleMask 身份等级位掩码
+     * @param cohortYears 届别年份
+     * @return 不可变的权限列表（总是包含 ROLE_USER）
+     */
+    public static List<GrantedAuthority> toAuthorities(int roleMask, List<Integer> cohortYears) {
+        List<GrantedAuthority> authorities = new ArrayList<>(cohortYears.size() + 3);
+        if ((roleMask & MINISTER_OR_DEPUTY) != 0) {
+            authorities.add(ROLE_MINISTER);
+        }
+        if ((roleMask & MEMBER) != 0) {
+            authorities.add(ROLE_MEMBER);
+        }
+        for (Integer year : cohortYears) {
+            authorities.add(COHORT_AUTHORITIES.computeIfAbsent(year, y -> new SimpleGrantedAuthority("ROLE_" + y)));
+        }
+        authorities.add(ROLE_USER);
+        return Collections.unmodifiableList(authorities);
+    }
+
+    /**
+     * 从令牌声明还原届别年份
+     *
+     * @param claim 声明值（JSON数组反序列化得到的列表）
+     * @return 届别年份，格式不符时返回空列表
+     */
+    public static List<Integer> cohortYearsFromClaim(Object claim) {
+        if (!(claim instanceof List<?> values)) {
+            return List.of();
+        }
+        List<Integer> years = new ArrayList<>(values.size());
+        for (Object value : values) {
+            if (value instanceof Number number) {
+                years.add(number.intValue());
+            }
+        }
+        return List.copyOf(years);
+    }
+
+    /**
+     * 取条目开头的四位届别年份，如 "2024级部员" -> 2024
+     */
+    private static int cohortYear(String entry) {
+        if (entry.length() < 5 || entry.charAt(4) != '级') {
+            return 0;
+        }
+        int year = 0;
+        for (int i = 0; i < 4; i++) {
+            char c = entry.charAt(i);
+            if (c < '0' || c > '9') {
+                return 0;
+            }
+            year = year * 10 + (c - '0');
+        }
+        return year;
+    }
+
+    /**
+     * 权限声明
+     *
+     * @param roleMask 身份等级位掩码
+     * @param cohortYears 届别年份（升序、不可变）
+     */
+    public record RoleClaim(int roleMask, List<Integer> cohortYears) {}
+}
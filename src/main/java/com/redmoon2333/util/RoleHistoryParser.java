@@ -5,13 +5,36 @@ import com.redmoon2333.exception.BusinessException;
 import com.redmoon2333.exception.ErrorCode;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
+import java.util.Map;
+
+/**
+ * 身份历史解析
+ *
+ * 手写分词，不使用正则；解析结果按原始字符串缓存在一个有界LRU中，
+ * 同一字符串的条目列表与单条解析结果一起缓存（单条身份历史与身份条目是同一个字符串），
+ * 返回的列表不可修改，可被多个调用方共享
+ *
+ * Why: 往届名录、AI 工具、任免、权限路径都会反复解析同一批身份历史，
+ *      之前每次都 replace/split 多遍并对每条做正则匹配
+ * Warning: 之前的缓存写满后不再写入，之后新出现的身份历史（如换届后追加的身份）永远不命中；
+ *          现按访问顺序淘汰最久未用的字符串
+ */
 public class RoleHistoryParser {
 
-    private static final Pattern ROLE_PATTERN = Pattern.compile("(\\d{4})级(.+)");
+    // 缓存上限，不同的身份历史、身份条目数量与用户数同量级
+    private static final int CACHE_MAX_SIZE = 4096;
+
+    // 条目格式不符时缓存的占位值
+    private static final ParsedRole INVALID = new ParsedRole(-1, "");
+
+    private static final Map<String, Parsed> CACHE = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Parsed> eldest) {
+            return size() > CACHE_MAX_SIZE;
+        }
+    };
 
     public static ParsedRole getLatestRole(User user) {
         if (user.getRoleHistory() == null || user.getRoleHistory().isBlank()) {
@@ -27,14 +50,38 @@ public class RoleHistoryParser {
         return parseSingleRole(lastEntry);
     }
 
+    /**
+     * 解析单个身份条目，格式：4位届别 + "级" + 身份名，如 2024级部员
+     */
     public static ParsedRole parseSingleRole(String entry) {
-        Matcher matcher = ROLE_PATTERN.matcher(entry.trim());
-        if (!matcher.matches()) {
+        ParsedRole parsed = parse(entry).role();
+        if (parsed == INVALID) {
             throw new BusinessException(ErrorCode.ROLE_HISTORY_PARSE_ERROR, "角色条目格式不匹配: " + entry);
         }
-        int year = Integer.parseInt(matcher.group(1));
-        String role = matcher.group(2).trim();
-        return new ParsedRole(year, role);
+        return parsed;
+    }
+
+    private static ParsedRole tokenizeRole(String entry) {
+        // 至少 4 位数字 + "级" + 1 个字符
+        if (entry.length() < 6 || entry.charAt(4) != '级') {
+            return INVALID;
+        }
+        int year = 0;
+        for (int i = 0; i < 4; i++) {
+            char c = entry.charAt(i);
+            if (c < '0' || c > '9') {
+                return INVALID;
+            }
+            year = year * 10 + (c - '0');
+        }
+        // 身份名不能跨行（与之前的正则 .+ 一致）
+        for (int i = 5; i < entry.length(); i++) {
+            char c = entry.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return INVALID;
+            }
+        }
+        return new ParsedRole(year, entry.substring(5).trim());
     }
 
     public static boolean isCurrentMinisterOrDeputy(User user, int currentYear) {
@@ -82,65 +129,90 @@ public class RoleHistoryParser {
      * 支持格式：
      * - 新格式: 2024级部员&2025级部长
      * - 旧格式: ["2024级部员"]、2024 级部长、["2024 级部长"]
+     *
+     * @return 身份条目列表（不可修改）
      */
     public static List<String> parseRoleHistory(String roleHistory) {
-        List<String> result = new ArrayList<>();
-        if (roleHistory == null || roleHistory.trim().isEmpty()) {
-            return result;
+        if (roleHistory == null) {
+            return List.of();
+        }
+        return parse(roleHistory).entries();
+    }
+
+    /**
+     * 按原始字符串查缓存，未命中时解析（在锁外进行）后写入
+     */
+    private static Parsed parse(String value) {
+        Parsed parsed;
+        synchronized (CACHE) {
+            parsed = CACHE.get(value);
         }
+        if (parsed == null) {
+            String trimmed = value.trim();
+            parsed = new Parsed(List.copyOf(tokenize(trimmed)), tokenizeRole(trimmed));
+            synchronized (CACHE) {
+                CACHE.put(value, parsed);
+            }
+        }
+        return parsed;
+    }
 
-        String cleaned = roleHistory.trim();
+    /**
+     * 单遍分词：去掉方括号、引号与半角空格，按 & 和 , 切分
+     * JSON数组格式中，引号内的逗号不作为分隔符（\" 为转义引号）
+     */
+    private static List<String> tokenize(String cleaned) {
+        List<String> result = new ArrayList<>(4);
+        if (cleaned.isEmpty()) {
+            return result;
+        }
+        StringBuilder part = new StringBuilder(cleaned.length());
 
-        if (cleaned.startsWith("[") && cleaned.endsWith("]")) {
-            cleaned = cleaned.substring(1, cleaned.length() - 1);
-            List<String> jsonElements = new ArrayList<>();
-            StringBuilder current = new StringBuilder();
+        int last = cleaned.length() - 1;
+        if (last > 0 && cleaned.charAt(0) == '[' && cleaned.charAt(last) == ']') {
             boolean inQuotes = false;
-
-            for (int i = 0; i < cleaned.length(); i++) {
+            for (int i = 1; i < last; i++) {
                 char c = cleaned.charAt(i);
-                if (c == '"' && (i == 0 || cleaned.charAt(i - 1) != '\\')) {
-                    inQuotes = !inQuotes;
-                } else if (c == ',' && !inQuotes) {
-                    jsonElements.add(current.toString().trim());
-                    current = new StringBuilder();
-                } else {
-                    current.append(c);
-                }
-            }
-            if (current.length() > 0) {
-                jsonElements.add(current.toString().trim());
-            }
-
-            for (String element : jsonElements) {
-                element = element.replace("\"", "").replace("'", "").trim();
-                element = element.replace(" ", "");
-                if (element.contains("&")) {
-                    String[] parts = element.split("&");
-                    for (String part : parts) {
-                        part = part.trim().replace(" ", "");
-                        if (!part.isEmpty()) {
-                            result.add(part);
-                        }
+                if (c == '"') {
+                    if (i == 1 || cleaned.charAt(i - 1) != '\\') {
+                        inQuotes = !inQuotes;
                     }
-                } else if (!element.isEmpty()) {
-                    result.add(element);
+                } else if (c == '&' || (c == ',' && !inQuotes)) {
+                    flush(part, result);
+                } else if (c != '\'' && c != ' ') {
+                    part.append(c);
                 }
             }
+            flush(part, result);
             return result;
         }
 
-        cleaned = cleaned.replace("[", "").replace("]", "").replace("\"", "").replace("'", "").replace(" ", "").trim();
-        String[] parts = cleaned.split("[&,]");
-        for (String part : parts) {
-            part = part.trim().replace(" ", "");
-            if (!part.isEmpty()) {
-                result.add(part);
+        for (int i = 0; i < cleaned.length(); i++) {
+            char c = cleaned.charAt(i);
+            if (c == '&' || c == ',') {
+                flush(part, result);
+            } else if (c != '[' && c != ']' && c != '"' && c != '\'' && c != ' ') {
+                part.append(c);
             }
         }
+        flush(part, result);
         return result;
     }
 
+    private static void flush(StringBuilder part, List<String> result) {
+        String entry = part.toString().trim();
+        if (!entry.isEmpty()) {
+            result.add(entry);
+        }
+        part.setLength(0);
+    }
+
     public record ParsedRole(int year, String role) {
     }
+
+    /**
+     * 缓存值：作为身份历史的条目列表，以及作为单个身份条目的解析结果（格式不符时为 INVALID）
+     */
+    private record Parsed(List<String> entries, ParsedRole role) {
+    }
 }
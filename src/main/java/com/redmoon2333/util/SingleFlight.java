@@ -0,0 +1,149 @@
+package com.redmoon2333.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * 进行中请求合并（single-flight）
+ *
+ * 同一时刻 key 相同的请求只会真正执行一次，其余调用方等待并共享同一个结果：
+ * - 同步调用：后到者阻塞等待首个调用的结果（或异常）
+ * - 流式调用：后到者加入同一条上游流，并从头重放已产生的元素
+ *
+ * Why: 热门问题在同一时刻被大量用户提问时，上游QPS应与"不同问题数"成正比，而不是与用户数成正比
+ *
+ * Warning: 只合并"进行中"的请求，上游结束后立即移除，不是结果缓存；
+ *          后到者最多等待 followerTimeout，超时抛出异常（不会因首个调用卡死而永久占住请求线程）
+ */
+public class SingleFlight {
+    private static final Logger logger = LoggerFactory.getLogger(SingleFlight.class);
+
+    // 后到者默认最长等待时间，覆盖上游调用自身的超时与重试
+    private static final Duration DEFAULT_FOLLOWER_TIMEOUT = Duration.ofSeconds(120);
+
+    private final String name;
+    private final long followerTimeoutMillis;
+
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> calls = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Flux<?>> streams = new ConcurrentHashMap<>();
+
+    private final AtomicLong executedCount = new AtomicLong(0);
+    private final AtomicLong sharedCount = new AtomicLong(0);
+
+    public SingleFlight(String name) {
+        this(name, DEFAULT_FOLLOWER_TIMEOUT);
+    }
+
+    public SingleFlight(String name, Duration followerTimeout) {
+        this.name = name;
+        this.followerTimeoutMillis = followerTimeout.toMillis();
+    }
+
+    /**
+     * 同步调用合并
+     *
+     * @param key 完整解析后的请求key
+     * @param call 实际上游调用
+     * @return 上游结果（可能来自其他线程的调用）
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> call) {
+        CompletableFuture<Object> created = new CompletableFuture<>();
+        CompletableFuture<Object> existing = calls.putIfAbsent(key, created);
+
+        if (existing != null) {
+            sharedCount.incrementAndGet();
+            logger.debug("[{}] 合并进行中的请求: key={}", name, key);
+            try {
+                return (T) existing.get(followerTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                if (e.getCause() instanceof Error error) {
+                    throw error;
+                }
+                throw new CompletionException(e.getCause());
+            } catch (TimeoutException e) {
+                throw new IllegalStateException("[" + name + "] 等待进行中的请求超时: key=" + key, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("[" + name + "] 等待进行中的请求被中断: key=" + key, e);
+            }
+        }
+
+        executedCount.incrementAndGet();
+        try {
+            T result = call.get();
+            created.complete(result);
+            return result;
+        } catch (Throwable e) {
+            // Error 与被偷偷抛出的受检异常也要通知等待者，否则它们会一直阻塞
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(key, created);
+        }
+    }
+
+    /**
+     * 流式调用合并
+     * Why: 使用 replay().refCount()，后加入的订阅者也能拿到完整输出；
+     *      所有订阅者都取消后上游订阅随之取消
+     *
+     * Warning: 条目必须在终止信号到达 replay 之前移除（doOnTerminate 位于 replay 上游）；
+     *          若在之后移除（如 doFinally），调用方可能在完成与移除之间取到条目，
+     *          refCount 对已终止的 replay 会重新订阅上游，产生一次重复调用
+     *
+     * @param key 完整解析后的请求key
+     * @param upstream 上游流工厂（仅在真正需要发起请求时调用）
+     * @return 共享的流
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Flux<T> executeStream(String key, Supplier<Flux<T>> upstream) {
+        return Flux.defer(() -> {
+            AtomicReference<Flux<T>> self = new AtomicReference<>();
+            Flux<T> candidate = Flux.defer(upstream)
+                    .doOnTerminate(() -> streams.remove(key, self.get()))
+                    .doOnCancel(() -> streams.remove(key, self.get()))
+                    .replay()
+                    .refCount();
+            self.set(candidate);
+
+            Flux<?> existing = streams.putIfAbsent(key, candidate);
+            if (existing != null) {
+                sharedCount.incrementAndGet();
+                logger.debug("[{}] 加入进行中的流: key={}", name, key);
+                return (Flux<T>) existing;
+            }
+
+            executedCount.incrementAndGet();
+            return candidate;
+        });
+    }
+
+    /**
+     * 获取合并统计信息
+     */
+    public Stats getStats() {
+        return new Stats(name, executedCount.get(), sharedCount.get(), calls.size() + streams.size());
+    }
+
+    /**
+     * 合并统计
+     * executed: 实际发往上游的请求数；shared: 搭便车的请求数；inflight: 当前进行中的key数
+     */
+    public record Stats(String name, long executed, long shared, int inflight) {}
+}
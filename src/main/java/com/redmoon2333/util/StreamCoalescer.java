@@ -0,0 +1,189 @@
+package com.redmoon2333.util;
+
+import org.reactivestreams.Subscription;
+import reactor.core.Disposable;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 流式文本片段合并工具
+ *
+ * 把上游逐token的增量在一个小时间窗口内（或累计字节数达到阈值时）合并成一帧再下发：
+ * - 首个片段立即下发，不增加首字延迟
+ * - 之后的片段先暂存，窗口到期或超过字节阈值时一次性下发
+ * - 上游结束或出错前先下发暂存内容
+ *
+ * Why: 中文回答每个增量往往只有一两个字，逐个下发意味着每个回答上千次 flush、
+ *      nginx 逐帧转发、前端逐帧重渲染；合并到 30~50ms 一帧后肉眼感知不到差别
+ *
+ * 背压：只在下游仍有需求时才向上游逐个请求片段，上游的 limitRate 等背压设置保持有效；
+ * 下游暂无需求时最多暂存一帧（含换行时两帧）
+ *
+ * Warning: 含换行的片段单独成帧、不与其他片段合并。前端按 SSE data 行还原文本，
+ *          空 data 行代表换行，合并跨越换行会改变前端还原出的文本
+ */
+public final class StreamCoalescer {
+
+    private StreamCoalescer() {
+    }
+
+    /**
+     * 合并流式文本片段
+     *
+     * @param source 上游片段流
+     * @param window 合并时间窗口，为0时不合并
+     * @param maxBytes 暂存内容的UTF-8字节数达到该值时立即下发
+     * @return 合并后的片段流，取消会传递到上游
+     */
+    public static Flux<String> coalesce(Flux<String> source, Duration window, int maxBytes) {
+        if (window == null || window.isZero() || window.isNegative()) {
+            return source;
+        }
+        return Flux.create(sink -> new Coalescer(sink, window.toNanos(), maxBytes, Schedulers.parallel()).subscribeTo(source));
+    }
+
+    private static final class Coalescer extends BaseSubscriber<String> {
+        private final FluxSink<String> sink;
+        private final long windowNanos;
+        private final int maxBytes;
+        private final Scheduler scheduler;
+
+        private final StringBuilder pending = new StringBuilder();
+        private int pendingBytes;
+        private boolean firstEmitted;
+        private Disposable timer;
+        // 是否有一个已向上游请求、尚未到达的片段
+        private final AtomicBoolean upstreamRequested = new AtomicBoolean();
+
+        Coalescer(FluxSink<String> sink, long windowNanos, int maxBytes, Scheduler scheduler) {
+            this.sink = sink;
+            this.windowNanos = windowNanos;
+            this.maxBytes = maxBytes;
+            this.scheduler = scheduler;
+        }
+
+        void subscribeTo(Flux<String> source) {
+            sink.onRequest(n -> requestUpstream());
+            sink.onDispose(() -> {
+                dispose();
+                synchronized (this) {
+                    cancelTimer();
+                    pending.setLength(0);
+                }
+            });
+            source.subscribe(this);
+        }
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            // 等下游请求后再向上游要数据
+            if (sink.requestedFromDownstream() > 0) {
+                requestUpstream();
+            }
+        }
+
+        @Override
+        protected void hookOnNext(String chunk) {
+            upstreamRequested.set(false);
+            coalesceChunk(chunk);
+            if (sink.requestedFromDownstream() > 0) {
+                requestUpstream();
+            }
+        }
+
+        @Override
+        protected void hookOnError(Throwable error) {
+            emitError(error);
+        }
+
+        @Override
+        protected void hookOnComplete() {
+            emitComplete();
+        }
+
+        private void requestUpstream() {
+            // 上游尚未订阅时不请求，由 hookOnSubscribe 补发
+            if (upstream() != null && !isDisposed() && upstreamRequested.compareAndSet(false, true)) {
+                request(1);
+            }
+        }
+
+        private synchronized void coalesceChunk(String chunk) {
+            if (chunk == null || chunk.isEmpty()) {
+                return;
+            }
+            if (!firstEmitted) {
+                firstEmitted = true;
+                sink.next(chunk);
+                return;
+            }
+            if (chunk.indexOf('\n') >= 0 || chunk.indexOf('\r') >= 0) {
+                flush();
+                sink.next(chunk);
+                return;
+            }
+            pending.append(chunk);
+            pendingBytes += utf8Length(chunk);
+            if (maxBytes > 0 && pendingBytes >= maxBytes) {
+                flush();
+            } else if (timer == null) {
+                timer = scheduler.schedule(this::onTimer, windowNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private synchronized void onTimer() {
+            timer = null;
+            flush();
+        }
+
+        private synchronized void emitError(Throwable error) {
+            flush();
+            sink.error(error);
+        }
+
+        private synchronized void emitComplete() {
+            flush();
+            sink.complete();
+        }
+
+        private void flush() {
+            cancelTimer();
+            if (pending.length() > 0) {
+                String frame = pending.toString();
+                pending.setLength(0);
+                pendingBytes = 0;
+                sink.next(frame);
+            }
+        }
+
+        private void cancelTimer() {
+            if (timer != null) {
+                timer.dispose();
+                timer = null;
+            }
+        }
+
+        private static int utf8Length(String text) {
+            int bytes = 0;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c < 0x80) {
+                    bytes += 1;
+                } else if (c < 0x800 || Character.isSurrogate(c)) {
+                    // 代理对两个char合计4字节
+                    bytes += 2;
+                } else {
+                    bytes += 3;
+                }
+            }
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+-- 同届唯一部长由数据库约束保证：以部长为最新身份的行，其 minister_year 取届别，其余为 NULL
+-- 唯一索引对 NULL 不做约束，因此只限制"每届最多一位现任部长"，并发任命时后提交的一方撞唯一键回滚
+-- "某届现任部长是谁"直接走该索引
+
+-- 已有数据中同届多位现任部长的，只保留最早同步的一行，其余取消最新标记，
+-- 这些用户下次同步身份时会因唯一键失败，需由管理员先处理
+UPDATE `user_role` r
+JOIN (
+    SELECT cohort_year, MIN(id) AS keep_id
+    FROM `user_role`
+    WHERE is_latest = 1 AND role_name = '部长'
+    GROUP BY cohort_year
+    HAVING COUNT(*) > 1
+) d ON d.cohort_year = r.cohort_year
+SET r.is_latest = 0
+WHERE r.is_latest = 1 AND r.role_name = '部长' AND r.id <> d.keep_id;
+
+ALTER TABLE `user_role`
+  ADD COLUMN `minister_year` INT
+    GENERATED ALWAYS AS (IF(`is_latest` = 1 AND `role_name` = '部长', `cohort_year`, NULL)) STORED
+    COMMENT '现任部长的届别，非现任部长为 NULL',
+  ADD UNIQUE KEY `uk_minister_year` (`minister_year`);
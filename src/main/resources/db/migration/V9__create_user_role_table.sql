@@ -0,0 +1,36 @@
+-- 身份历史的规范化副本：每个 (用户, 届别, 身份) 一行，由 UserRoleService 在身份变更、注册时同步维护
+-- user.role_history 仍是唯一的事实来源，本表可随时按其重建
+CREATE TABLE `user_role` (
+  `id`            BIGINT NOT NULL AUTO_INCREMENT,
+  `user_id`       INT NOT NULL,
+  `cohort_year`   INT NOT NULL             COMMENT '届别，如 2024',
+  `department`    VARCHAR(50) NOT NULL DEFAULT '' COMMENT '身份名中身份等级之前的部分（如"人力资源中心"），无则为空',
+  `role_level`    TINYINT NOT NULL         COMMENT '0 其他 / 1 部员 / 2 副部长 / 3 部长（含主任） / 4 超级管理员',
+  `role_name`     VARCHAR(50) NOT NULL     COMMENT '原始身份名，如 部长',
+  `is_latest`     TINYINT(1) NOT NULL DEFAULT 0 COMMENT '是否为该用户身份历史中的最后一条',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_user_year_role` (`user_id`, `cohort_year`, `role_name`),
+  KEY `idx_year_level` (`cohort_year`, `role_level`, `user_id`),
+  KEY `idx_level_year` (`role_level`, `cohort_year`, `is_latest`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='用户身份表';
+
+-- 视图改为按 user_role 计算身份等级，不再对 role_history 做 LIKE 扫描
+-- 现有数据由应用启动时回填（UserRoleService.backfillIfEmpty），回填完成前 role_level 均为 member
+CREATE OR REPLACE VIEW `v_user_roles` AS
+SELECT
+    u.user_id,
+    u.username,
+    u.name,
+    u.role_history,
+    u.student_id,
+    CASE
+        WHEN r.max_level >= 4 THEN 'admin'
+        WHEN r.max_level >= 2 THEN 'minister'
+        ELSE 'member'
+    END AS role_level
+FROM `user` u
+LEFT JOIN (
+    SELECT user_id, MAX(role_level) AS max_level
+    FROM `user_role`
+    GROUP BY user_id
+) r ON r.user_id = u.user_id;